@@ -0,0 +1,143 @@
+package fr.insee.vtl.engine;
+
+import fr.insee.vtl.engine.visitors.VariablesVisitor;
+import fr.insee.vtl.parser.VtlParser;
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * The dependencies between the statements of a script, computed from the variables they assign and read.
+ * <p>
+ * A statement depends on the statements before it that assign a variable it reads (it needs their result),
+ * that assign the variable it assigns, or that read the variable it assigns (they need the previous value).
+ * Statements that are not temporary assignments depend on all the statements before them, and all the
+ * statements after them depend on them.
+ */
+final class StatementGraph {
+
+    private static final VariablesVisitor VARIABLES_VISITOR = new VariablesVisitor();
+
+    private final List<VtlParser.StatementContext> statements;
+    private final List<Set<Integer>> dependencies = new ArrayList<>();
+    private final int[] readCounts;
+
+    StatementGraph(List<VtlParser.StatementContext> statements) {
+        this.statements = List.copyOf(statements);
+        this.readCounts = new int[this.statements.size()];
+        Map<String, Integer> writers = new HashMap<>();
+        Map<String, Set<Integer>> readers = new HashMap<>();
+        Integer barrier = null;
+        for (int i = 0; i < this.statements.size(); i++) {
+            var statement = this.statements.get(i);
+            Set<Integer> statementDependencies = new TreeSet<>();
+            if (statement instanceof VtlParser.TemporaryAssignmentContext) {
+                var assignment = (VtlParser.TemporaryAssignmentContext) statement;
+                var name = assignment.varID().getText();
+                var reads = VARIABLES_VISITOR.visit(assignment.expr());
+                countReads(assignment.expr(), writers);
+                for (String read : reads) {
+                    Optional.ofNullable(writers.get(read)).ifPresent(statementDependencies::add);
+                }
+                Optional.ofNullable(writers.get(name)).ifPresent(statementDependencies::add);
+                statementDependencies.addAll(readers.getOrDefault(name, Set.of()));
+                Optional.ofNullable(barrier).ifPresent(statementDependencies::add);
+                for (String read : reads) {
+                    readers.computeIfAbsent(read, key -> new HashSet<>()).add(i);
+                }
+                writers.put(name, i);
+                readers.remove(name);
+            } else {
+                countReads(statement, writers);
+                for (int j = 0; j < i; j++) {
+                    statementDependencies.add(j);
+                }
+                barrier = i;
+            }
+            statementDependencies.remove(i);
+            dependencies.add(statementDependencies);
+        }
+    }
+
+    /**
+     * Counts the references of a statement to the variables assigned before it, a variable referenced twice by the
+     * same statement being read twice.
+     */
+    private void countReads(ParseTree tree, Map<String, Integer> writers) {
+        if (tree instanceof VtlParser.VarIdExprContext) {
+            Optional.ofNullable(writers.get(tree.getText())).ifPresent(writer -> readCounts[writer]++);
+        }
+        for (int i = 0; i < tree.getChildCount(); i++) {
+            countReads(tree.getChild(i), writers);
+        }
+    }
+
+    /**
+     * Returns the positions of the statements a statement depends on.
+     *
+     * @param index The position of the statement.
+     * @return The positions of the statements it depends on.
+     */
+    Set<Integer> getDependencies(int index) {
+        return Collections.unmodifiableSet(dependencies.get(index));
+    }
+
+    /**
+     * Returns the assignments whose value is read at most once by the following statements, a statement referencing
+     * the variable twice reading it twice.
+     *
+     * @return The assignments read at most once.
+     */
+    Set<VtlParser.StatementContext> getAssignmentsReadAtMostOnce() {
+        Set<VtlParser.StatementContext> assignments = new HashSet<>();
+        for (int i = 0; i < statements.size(); i++) {
+            if (statements.get(i) instanceof VtlParser.TemporaryAssignmentContext && readCounts[i] <= 1) {
+                assignments.add(statements.get(i));
+            }
+        }
+        return assignments;
+    }
+
+    /**
+     * Executes the statements on an executor. Each statement starts once the statements it depends on are done.
+     * <p>
+     * If statements fail, the failure of the first one in the script is thrown once all the other statements are
+     * done or skipped. The statements depending on a failed statement are skipped.
+     *
+     * @param execution The execution of a statement, returning its result.
+     * @param executor  The executor running the statements.
+     * @return The result of the last statement.
+     */
+    Object execute(Function<VtlParser.StatementContext, Object> execution, Executor executor) {
+        int size = statements.size();
+        var futures = new CompletableFuture<?>[size];
+        var results = new Object[size];
+        var failures = new Throwable[size];
+        for (int i = 0; i < size; i++) {
+            int index = i;
+            var ready = CompletableFuture.allOf(dependencies.get(i).stream()
+                    .map(dependency -> futures[dependency])
+                    .toArray(CompletableFuture[]::new));
+            futures[i] = ready.thenRunAsync(() -> {
+                try {
+                    results[index] = execution.apply(statements.get(index));
+                } catch (RuntimeException | Error e) {
+                    failures[index] = e;
+                    throw e;
+                }
+            }, executor);
+        }
+        CompletableFuture.allOf(futures).exceptionally(e -> null).join();
+        for (Throwable failure : failures) {
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure != null) {
+                throw (Error) failure;
+            }
+        }
+        return size == 0 ? null : results[size - 1];
+    }
+}
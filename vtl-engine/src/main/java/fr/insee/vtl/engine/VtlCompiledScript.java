@@ -0,0 +1,49 @@
+package fr.insee.vtl.engine;
+
+import fr.insee.vtl.engine.exceptions.VtlScriptException;
+import fr.insee.vtl.parser.VtlParser;
+
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import java.util.Objects;
+
+/**
+ * The {@link CompiledScript} implementation for VTL.
+ * <p>
+ * A compiled script holds the parse tree of a script. Each evaluation builds the expressions of the statements
+ * against the bindings of its context, so the same compiled script can be evaluated against bindings with
+ * different datasets and values.
+ */
+public class VtlCompiledScript extends CompiledScript {
+
+    private final VtlScriptEngine engine;
+    private final VtlParser.StartContext start;
+
+    VtlCompiledScript(VtlScriptEngine engine, VtlParser.StartContext start) {
+        this.engine = Objects.requireNonNull(engine);
+        this.start = Objects.requireNonNull(start);
+    }
+
+    /**
+     * Evaluation of the compiled script in a given context.
+     *
+     * @param context The evaluation context (for example: data bindings).
+     * @return The result of the evaluation of the script in the given context.
+     * @throws VtlScriptException In case of error during the evaluation.
+     */
+    @Override
+    public Object eval(ScriptContext context) throws VtlScriptException {
+        return engine.evalTree(start, context);
+    }
+
+    /**
+     * Returns the script engine that compiled the script.
+     *
+     * @return The script engine that compiled the script.
+     */
+    @Override
+    public ScriptEngine getEngine() {
+        return engine;
+    }
+}
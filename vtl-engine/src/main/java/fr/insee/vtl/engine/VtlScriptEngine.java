@@ -4,16 +4,21 @@ import fr.insee.vtl.engine.exceptions.VtlRuntimeException;
 import fr.insee.vtl.engine.exceptions.VtlScriptException;
 import fr.insee.vtl.engine.exceptions.VtlSyntaxException;
 import fr.insee.vtl.engine.visitors.AssignmentVisitor;
+import fr.insee.vtl.engine.visitors.DeferredDataset;
+import fr.insee.vtl.engine.visitors.expression.CommonSubexpressions;
 import fr.insee.vtl.model.ProcessingEngine;
 import fr.insee.vtl.model.ProcessingEngineFactory;
 import fr.insee.vtl.parser.VtlLexer;
 import fr.insee.vtl.parser.VtlParser;
 import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 
 import javax.script.*;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.*;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 /**
@@ -28,12 +33,32 @@ import java.util.stream.Collectors;
  * VTL expression can be evaluated using the methods
  * {@link #eval(Reader)}, {@link #eval(Reader, ScriptContext)},
  * {@link #eval(String)} and {@link #eval(String, ScriptContext)}
+ * <p>
+ * Scripts evaluated many times can be compiled once with {@link #compile(String)} or {@link #compile(Reader)}
+ * and evaluated against different bindings with {@link CompiledScript#eval(Bindings)}.
  */
-public class VtlScriptEngine extends AbstractScriptEngine {
+public class VtlScriptEngine extends AbstractScriptEngine implements Compilable {
 
     public static final String PROCESSING_ENGINE_NAMES = "$vtl.engine.processing_engine_names";
+    public static final String SCRIPT_CACHE_SIZE = "$vtl.engine.script_cache_size";
+    public static final String EXECUTOR = "$vtl.engine.executor";
+    public static final String LAZY_ASSIGNMENT = "$vtl.engine.lazy_assignment";
+    public static final String EXACT_MEDIAN = "$vtl.engine.exact_median";
+
+    private static final int DEFAULT_SCRIPT_CACHE_SIZE = 64;
+    private static final String CONFIGURATION_PREFIX = "$vtl.";
 
     private final ScriptEngineFactory factory;
+    private final Map<String, VtlCompiledScript> scriptCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, VtlCompiledScript> eldest) {
+            return size() > getScriptCacheSize();
+        }
+    };
+
+    private Map<String, ProcessingEngineFactory> processingEngineFactories;
+    private Map<String, Object> processingEngineConfiguration;
+    private ProcessingEngine processingEngine;
 
     /**
      * Constructor taking a script engine factory.
@@ -48,73 +73,233 @@ public class VtlScriptEngine extends AbstractScriptEngine {
         Object o = Optional.ofNullable(get(PROCESSING_ENGINE_NAMES))
                 .orElse("memory");
         if (o instanceof String) {
-            return Arrays.asList(((String) o).split(","));
+            return Arrays.stream(((String) o).split(","))
+                    .map(String::trim)
+                    .collect(Collectors.toList());
         } else {
             throw new IllegalArgumentException(PROCESSING_ENGINE_NAMES +
                                                " must be a comma separated list of names");
         }
     }
 
-    public ProcessingEngine getProcessingEngine() {
+    /**
+     * Returns the processing engine factories available to the script engine, loaded once.
+     */
+    private synchronized Map<String, ProcessingEngineFactory> getProcessingEngineFactories() {
+        if (processingEngineFactories == null) {
+            Map<String, ProcessingEngineFactory> factories = new LinkedHashMap<>();
+            ServiceLoader.load(ProcessingEngineFactory.class).stream()
+                    .map(ServiceLoader.Provider::get)
+                    .forEach(f -> factories.putIfAbsent(f.getName(), f));
+            processingEngineFactories = Collections.unmodifiableMap(factories);
+        }
+        return processingEngineFactories;
+    }
+
+    /**
+     * Returns the bindings of the engine scope configuring the processing engine: {@link #PROCESSING_ENGINE_NAMES}
+     * and the bindings of the processing engines it names (the names starting with <code>$vtl.</code> followed by
+     * the name of a processing engine and a dot).
+     */
+    private Map<String, Object> getProcessingEngineConfiguration(List<String> names) {
+        Map<String, Object> configuration = new HashMap<>();
+        configuration.put(PROCESSING_ENGINE_NAMES, get(PROCESSING_ENGINE_NAMES));
+        for (Map.Entry<String, Object> binding : getBindings(ScriptContext.ENGINE_SCOPE).entrySet()) {
+            for (String name : names) {
+                if (binding.getKey().startsWith(CONFIGURATION_PREFIX + name + ".")) {
+                    configuration.put(binding.getKey(), binding.getValue());
+                }
+            }
+        }
+        return configuration;
+    }
+
+    private static boolean isSameConfiguration(Map<String, Object> previous, Map<String, Object> current) {
+        if (previous == null || !previous.keySet().equals(current.keySet())) {
+            return false;
+        }
+        return current.entrySet().stream().allMatch(entry -> Objects.equals(previous.get(entry.getKey()), entry.getValue()));
+    }
+
+    /**
+     * Returns the processing engine used to evaluate the scripts.
+     * <p>
+     * The engine is created by the factory of the first name of {@link #PROCESSING_ENGINE_NAMES} for which a
+     * factory is available. It is kept as long as {@link #PROCESSING_ENGINE_NAMES} and the bindings of the
+     * processing engines it names (like <code>$vtl.spark.session</code>) are unchanged in the engine scope. The
+     * other configuration bindings of the script engine do not replace the processing engine.
+     *
+     * @return The processing engine.
+     * @throws IllegalArgumentException if no factory is available for the configured names.
+     */
+    public synchronized ProcessingEngine getProcessingEngine() {
         List<String> names = getProcessingEngineNames();
-        List<ProcessingEngineFactory> factories = ServiceLoader.load(ProcessingEngineFactory.class)
-                .stream()
-                .map(ServiceLoader.Provider::get)
-                .filter(f -> names.contains(f.getName()))
-                .collect(Collectors.toList());
-        // TODO: Handle multiple factories.
-        return factories.get(0).getProcessingEngine(this);
+        var configuration = getProcessingEngineConfiguration(names);
+        if (processingEngine == null || !isSameConfiguration(processingEngineConfiguration, configuration)) {
+            var factories = getProcessingEngineFactories();
+            var selected = names.stream()
+                    .filter(factories::containsKey)
+                    .findFirst()
+                    .map(factories::get)
+                    .orElseThrow(() -> new IllegalArgumentException("no processing engine found for " +
+                                                                    PROCESSING_ENGINE_NAMES + " " + names));
+            processingEngine = selected.getProcessingEngine(this);
+            processingEngineConfiguration = configuration;
+        }
+        return processingEngine;
+    }
+
+    private int getScriptCacheSize() {
+        Object o = Optional.ofNullable(get(SCRIPT_CACHE_SIZE))
+                .orElse(DEFAULT_SCRIPT_CACHE_SIZE);
+        if (o instanceof Integer || o instanceof Long) {
+            return ((Number) o).intValue();
+        } else {
+            throw new IllegalArgumentException(SCRIPT_CACHE_SIZE + " must be an integer");
+        }
     }
 
     /**
-     * Base method for the evaluation of a script expression in a given context.
+     * Parses a script.
      *
-     * @param stream  The script to evaluate represented as a stream of Unicode code points.
-     * @param context The evaluation context (for example: data bindings).
-     * @return The result of the evaluation of the script in the given context.
-     * @throws VtlScriptException In case of error during the evaluation.
+     * @param stream The script to parse represented as a stream of Unicode code points.
+     * @return The parse tree of the script.
+     * @throws VtlScriptException In case of syntax error.
      */
-    private Object evalStream(CodePointCharStream stream, ScriptContext context) throws VtlScriptException {
-        try {
-            VtlLexer lexer = new VtlLexer(stream);
-
-            Deque<VtlScriptException> errors = new ArrayDeque<>();
-            BaseErrorListener baseErrorListener = new BaseErrorListener() {
-                @Override
-                public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int startLine, int startColumn, String msg, RecognitionException e) {
-                    if (e != null && e.getCtx() != null) {
-                        errors.add(new VtlScriptException(msg, e.getCtx()));
+    private VtlParser.StartContext parse(CodePointCharStream stream) throws VtlScriptException {
+        VtlLexer lexer = new VtlLexer(stream);
+
+        Deque<VtlScriptException> errors = new ArrayDeque<>();
+        BaseErrorListener baseErrorListener = new BaseErrorListener() {
+            @Override
+            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int startLine, int startColumn, String msg, RecognitionException e) {
+                if (e != null && e.getCtx() != null) {
+                    errors.add(new VtlScriptException(msg, e.getCtx()));
+                } else {
+                    if (offendingSymbol instanceof Token) {
+                        errors.add(new VtlSyntaxException(msg, (Token) offendingSymbol));
                     } else {
-                        if (offendingSymbol instanceof Token) {
-                            errors.add(new VtlSyntaxException(msg, (Token) offendingSymbol));
-                        } else {
-                            throw new Error("offendingSymbol was not a Token");
-                        }
+                        throw new Error("offendingSymbol was not a Token");
                     }
                 }
+            }
+
+        };
 
-            };
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(baseErrorListener);
 
-            lexer.removeErrorListeners();
-            lexer.addErrorListener(baseErrorListener);
+        CommonTokenStream tokens = new CommonTokenStream(lexer);
+        VtlParser parser = new VtlParser(tokens);
+        parser.removeErrorListeners();
 
-            VtlParser parser = new VtlParser(new CommonTokenStream(lexer));
-            parser.removeErrorListeners();
+        // First try the faster SLL prediction, which is enough for almost all
+        // scripts. It gives up at the first error, in which case the script is
+        // parsed again with full LL prediction to report the errors.
+        VtlParser.StartContext start;
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        parser.setErrorHandler(new BailErrorStrategy());
+        try {
+            start = parser.start();
+        } catch (ParseCancellationException pce) {
+            tokens.seek(0);
+            parser.reset();
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            parser.setErrorHandler(new DefaultErrorStrategy());
             parser.addErrorListener(baseErrorListener);
 
             // Note that we need to call this method to trigger the
             // error listener.
-            var start = parser.start();
+            start = parser.start();
+        }
 
-            if (!errors.isEmpty()) {
-                var first = errors.removeFirst();
-                for (VtlScriptException suppressed : errors) {
-                    first.addSuppressed(suppressed);
-                }
-                throw first;
+        if (!errors.isEmpty()) {
+            var first = errors.removeFirst();
+            for (VtlScriptException suppressed : errors) {
+                first.addSuppressed(suppressed);
             }
+            throw first;
+        }
+        return start;
+    }
+
+    private Executor getExecutor() {
+        Object o = get(EXECUTOR);
+        if (o == null || o instanceof Executor) {
+            return (Executor) o;
+        } else {
+            throw new IllegalArgumentException(EXECUTOR + " must be an executor");
+        }
+    }
+
+    private boolean isLazyAssignment() {
+        Object o = Optional.ofNullable(get(LAZY_ASSIGNMENT))
+                .orElse(false);
+        if (o instanceof Boolean) {
+            return (Boolean) o;
+        } else {
+            throw new IllegalArgumentException(LAZY_ASSIGNMENT + " must be a boolean");
+        }
+    }
+
+    private boolean isExactMedian() {
+        Object o = Optional.ofNullable(get(EXACT_MEDIAN))
+                .orElse(false);
+        if (o instanceof Boolean) {
+            return (Boolean) o;
+        } else {
+            throw new IllegalArgumentException(EXACT_MEDIAN + " must be a boolean");
+        }
+    }
+
+    /**
+     * Returns a copy of a context whose engine scope bindings can be used by several threads.
+     */
+    private static ScriptContext synchronizedContext(ScriptContext context) {
+        var bindings = context.getBindings(ScriptContext.ENGINE_SCOPE);
+        var synchronizedContext = new SimpleScriptContext();
+        synchronizedContext.setBindings(new SimpleBindings(Collections.synchronizedMap(bindings)), ScriptContext.ENGINE_SCOPE);
+        synchronizedContext.setBindings(context.getBindings(ScriptContext.GLOBAL_SCOPE), ScriptContext.GLOBAL_SCOPE);
+        synchronizedContext.setReader(context.getReader());
+        synchronizedContext.setWriter(context.getWriter());
+        synchronizedContext.setErrorWriter(context.getErrorWriter());
+        return synchronizedContext;
+    }
 
-            AssignmentVisitor assignmentVisitor = new AssignmentVisitor(context, getProcessingEngine());
+    /**
+     * Base method for the evaluation of a parsed script in a given context.
+     * <p>
+     * The statements are evaluated in order, unless an executor is set in the {@link #EXECUTOR} binding. In
+     * that case, the statements that do not depend on each other are evaluated concurrently on the executor.
+     * <p>
+     * If the {@link #LAZY_ASSIGNMENT} binding is true, the datasets are assigned as {@link DeferredDataset}s,
+     * resolved the first time they are read. A dataset read by at most one other statement of the script is
+     * not resolved for it: that statement builds on its expression instead.
+     * <p>
+     * The dataset expressions written several times with the same bindings are resolved once.
+     * <p>
+     * The medians of the aggregations are estimated in bounded memory, unless the {@link #EXACT_MEDIAN} binding
+     * is true.
+     *
+     * @param start   The parse tree of the script to evaluate.
+     * @param context The evaluation context (for example: data bindings).
+     * @return The result of the evaluation of the script in the given context.
+     * @throws VtlScriptException In case of error during the evaluation.
+     */
+    Object evalTree(VtlParser.StartContext start, ScriptContext context) throws VtlScriptException {
+        try {
+            var executor = getExecutor();
+            var graph = new StatementGraph(start.statement());
+            var inlined = isLazyAssignment() ? graph.getAssignmentsReadAtMostOnce() : null;
+            var commonSubexpressions = new CommonSubexpressions(start.statement());
+            var exactMedian = isExactMedian();
+            if (executor != null) {
+                AssignmentVisitor assignmentVisitor = new AssignmentVisitor(synchronizedContext(context),
+                        getProcessingEngine(), inlined, commonSubexpressions, exactMedian);
+                return graph.execute(assignmentVisitor::visit, executor);
+            }
+            AssignmentVisitor assignmentVisitor = new AssignmentVisitor(context, getProcessingEngine(), inlined,
+                    commonSubexpressions, exactMedian);
             Object lastValue = null;
             for (VtlParser.StatementContext stmt : start.statement()) {
                 lastValue = assignmentVisitor.visit(stmt);
@@ -125,8 +310,65 @@ public class VtlScriptEngine extends AbstractScriptEngine {
         }
     }
 
+    /**
+     * Compiles a script (represented as a string) for repeated evaluation.
+     *
+     * @param script The script to compile represented as a string.
+     * @return The compiled script.
+     * @throws VtlScriptException In case of syntax error.
+     */
+    @Override
+    public VtlCompiledScript compile(String script) throws VtlScriptException {
+        return new VtlCompiledScript(this, parse(CharStreams.fromString(script)));
+    }
+
+    /**
+     * Compiles a script (read in a <code>Reader</code>) for repeated evaluation.
+     *
+     * @param reader The <code>Reader</code> containing the script to compile.
+     * @return The compiled script.
+     * @throws ScriptException In case of syntax error or error reading the script.
+     */
+    @Override
+    public VtlCompiledScript compile(Reader reader) throws ScriptException {
+        try {
+            return new VtlCompiledScript(this, parse(CharStreams.fromReader(reader)));
+        } catch (IOException e) {
+            throw new ScriptException(e);
+        }
+    }
+
+    /**
+     * Returns the compiled script of a script text, from the cache of recently evaluated scripts if possible.
+     */
+    private VtlCompiledScript compileCached(String script) throws VtlScriptException {
+        var cacheSize = getScriptCacheSize();
+        synchronized (scriptCache) {
+            // Evicts the least recently used scripts if the size of the cache was lowered.
+            var iterator = scriptCache.keySet().iterator();
+            while (scriptCache.size() > Math.max(0, cacheSize)) {
+                iterator.next();
+                iterator.remove();
+            }
+            var compiledScript = scriptCache.get(script);
+            if (compiledScript != null) {
+                return compiledScript;
+            }
+        }
+        var compiledScript = compile(script);
+        if (cacheSize > 0) {
+            synchronized (scriptCache) {
+                scriptCache.put(script, compiledScript);
+            }
+        }
+        return compiledScript;
+    }
+
     /**
      * Evaluation of a script expression (represented as a string) in a given context.
+     * <p>
+     * The parse trees of the last evaluated scripts are kept in a cache, so that evaluating the same script text
+     * again does not parse it again. The size of the cache is read from the {@link #SCRIPT_CACHE_SIZE} binding.
      *
      * @param script  The script to evaluate represented as a string.
      * @param context The evaluation context (for example: data bindings).
@@ -135,8 +377,7 @@ public class VtlScriptEngine extends AbstractScriptEngine {
      */
     @Override
     public Object eval(String script, ScriptContext context) throws VtlScriptException {
-        CodePointCharStream stream = CharStreams.fromString(script);
-        return evalStream(stream, context);
+        return compileCached(script).eval(context);
     }
 
     /**
@@ -149,12 +390,7 @@ public class VtlScriptEngine extends AbstractScriptEngine {
      */
     @Override
     public Object eval(Reader reader, ScriptContext context) throws ScriptException {
-        try {
-            CodePointCharStream stream = CharStreams.fromReader(reader);
-            return evalStream(stream, context);
-        } catch (IOException e) {
-            throw new ScriptException(e);
-        }
+        return compile(reader).eval(context);
     }
 
     /**
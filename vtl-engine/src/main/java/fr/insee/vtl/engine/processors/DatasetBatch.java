@@ -0,0 +1,111 @@
+package fr.insee.vtl.engine.processors;
+
+import fr.insee.vtl.model.Batch;
+import fr.insee.vtl.model.ColumnVector;
+import fr.insee.vtl.model.ColumnarDataset;
+import fr.insee.vtl.model.Dataset;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+import static fr.insee.vtl.model.Structured.DataPoint;
+import static fr.insee.vtl.model.Structured.DataStructure;
+import static fr.insee.vtl.model.Structured.IndexedRow;
+
+/**
+ * A {@link Batch} of consecutive data points of a dataset, where all the rows are selected.
+ * <p>
+ * The vectors of the components are read once per batch: from the data points, or directly from the columns
+ * of a {@link ColumnarDataset}.
+ */
+final class DatasetBatch implements Batch {
+
+    private final DataStructure structure;
+    private final List<DataPoint> dataPoints;
+    private final ColumnarDataset columnar;
+    private final int from;
+    private final int size;
+    private final Map<String, ColumnVector> vectors = new HashMap<>();
+
+    private DatasetBatch(DataStructure structure, List<DataPoint> dataPoints, ColumnarDataset columnar,
+                         int from, int size) {
+        this.structure = structure;
+        this.dataPoints = dataPoints;
+        this.columnar = columnar;
+        this.from = from;
+        this.size = size;
+    }
+
+    /**
+     * Splits a dataset in batches of at most <code>batchSize</code> data points and passes them to a consumer.
+     */
+    static void forEach(Dataset dataset, int batchSize, Consumer<DatasetBatch> consumer) {
+        var structure = dataset.getDataStructure();
+        if (dataset instanceof ColumnarDataset) {
+            var columnar = (ColumnarDataset) dataset;
+            for (int from = 0; from < columnar.size(); from += batchSize) {
+                consumer.accept(new DatasetBatch(structure, columnar.getDataPoints(), columnar, from,
+                        Math.min(batchSize, columnar.size() - from)));
+            }
+            return;
+        }
+        var iterator = dataset.stream().iterator();
+        while (iterator.hasNext()) {
+            List<DataPoint> dataPoints = new ArrayList<>(batchSize);
+            while (iterator.hasNext() && dataPoints.size() < batchSize) {
+                dataPoints.add(iterator.next());
+            }
+            consumer.accept(new DatasetBatch(structure, dataPoints, null, 0, dataPoints.size()));
+        }
+    }
+
+    /**
+     * Splits the data points of a dataset from index <code>from</code>, inclusive, to index <code>to</code>,
+     * exclusive, in batches of at most <code>batchSize</code> data points and passes them to a consumer.
+     */
+    static void forEach(Dataset dataset, int from, int to, int batchSize, Consumer<DatasetBatch> consumer) {
+        var structure = dataset.getDataStructure();
+        var columnar = dataset instanceof ColumnarDataset ? (ColumnarDataset) dataset : null;
+        var dataPoints = dataset.getDataPoints();
+        for (int start = from; start < to; start += batchSize) {
+            consumer.accept(new DatasetBatch(structure, dataPoints, columnar, start, Math.min(batchSize, to - start)));
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isSelected(int index) {
+        return true;
+    }
+
+    @Override
+    public IndexedRow getRow(int index) {
+        return dataPoints.get(from + index);
+    }
+
+    @Override
+    public ColumnVector getColumn(String name) {
+        var vector = vectors.get(name);
+        if (vector == null) {
+            int index = structure.indexOfKey(name);
+            if (index == -1) {
+                throw new IllegalArgumentException("unknown column " + name);
+            }
+            if (columnar != null) {
+                vector = columnar.getColumn(index).getVector(from, from + size);
+            } else {
+                var values = new Object[size];
+                for (int i = 0; i < size; i++) {
+                    values[i] = dataPoints.get(from + i).get(index);
+                }
+                vector = ColumnVector.of(structure.get(name).getType(), values);
+            }
+            vectors.put(name, vector);
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,511 @@
+package fr.insee.vtl.engine.processors;
+
+import fr.insee.vtl.model.*;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static fr.insee.vtl.model.Structured.DataPoint;
+import static fr.insee.vtl.model.Structured.DataStructure;
+import static fr.insee.vtl.model.Structured.IndexedRow;
+
+/**
+ * A chain of row-local transformations (calc, filter, rename and keep/drop) fused into a single operator.
+ * <p>
+ * Every column of every step of the chain is mapped to a slot. The source dataset is processed in batches of
+ * {@link #BATCH_SIZE} rows, where each slot is a {@link ColumnVector}: the slots of the source dataset are read
+ * from the source data points, or directly from the columns of a {@link ColumnarDataset}, and the slots
+ * computed by calc are resolved lazily for the whole batch, the first time they are read. The values of the
+ * source data points are converted to primitive vectors only for the expressions reading whole columns; the
+ * output data points and the expressions reading rows get the values of the source data points themselves. For each batch, the
+ * filters are resolved first and only compute the calc slots they depend on; the data points of the final
+ * structure are then created for the selected rows, computing only the slots they keep. Rename and keep/drop
+ * only change the mapping between names and slots and cost nothing per row.
+ * <p>
+ * Instances are immutable: adding a step returns a new expression.
+ */
+final class FusedDatasetExpression extends DatasetExpression {
+
+    /**
+     * The number of rows resolved at once.
+     */
+    static final int BATCH_SIZE = 1024;
+
+    private final DatasetExpression source;
+    private final List<String> sourceNames;
+    private final DataStructure structure;
+    private final Map<String, Integer> layout;
+    private final List<Step> calcSlots;
+    private final List<Step> filters;
+
+    private FusedDatasetExpression(DatasetExpression source, List<String> sourceNames, DataStructure structure,
+                                   Map<String, Integer> layout, List<Step> calcSlots, List<Step> filters) {
+        this.source = source;
+        this.sourceNames = sourceNames;
+        this.structure = structure;
+        this.layout = layout;
+        this.calcSlots = calcSlots;
+        this.filters = filters;
+    }
+
+    /**
+     * Returns the expression itself if it is already fused, or an empty chain reading the expression.
+     */
+    static FusedDatasetExpression of(DatasetExpression expression) {
+        if (expression instanceof FusedDatasetExpression) {
+            return (FusedDatasetExpression) expression;
+        }
+        var structure = expression.getDataStructure();
+        var sourceNames = List.copyOf(structure.keySet());
+        Map<String, Integer> layout = new LinkedHashMap<>();
+        for (String name : sourceNames) {
+            layout.put(name, layout.size());
+        }
+        return new FusedDatasetExpression(expression, sourceNames, structure, layout, List.of(), List.of());
+    }
+
+    /**
+     * Adds a calc step. The expressions are resolved against the current structure.
+     */
+    FusedDatasetExpression withCalc(Map<String, ResolvableExpression> expressions, DataStructure newStructure) {
+        var newCalcSlots = new ArrayList<>(calcSlots);
+        Map<String, Integer> calculated = new HashMap<>();
+        for (Map.Entry<String, ResolvableExpression> entry : expressions.entrySet()) {
+            calculated.put(entry.getKey(), sourceNames.size() + newCalcSlots.size());
+            newCalcSlots.add(new Step(entry.getValue(), structure, layout));
+        }
+        Map<String, Integer> newLayout = new LinkedHashMap<>();
+        for (String name : newStructure.keySet()) {
+            newLayout.put(name, calculated.getOrDefault(name, layout.get(name)));
+        }
+        return new FusedDatasetExpression(source, sourceNames, newStructure, newLayout,
+                List.copyOf(newCalcSlots), filters);
+    }
+
+    /**
+     * Adds a filter step. The expression is resolved against the current structure.
+     */
+    FusedDatasetExpression withFilter(ResolvableExpression filter) {
+        var newFilters = new ArrayList<>(filters);
+        newFilters.add(new Step(filter, structure, layout));
+        return new FusedDatasetExpression(source, sourceNames, structure, layout, calcSlots,
+                List.copyOf(newFilters));
+    }
+
+    /**
+     * Adds a rename step. The new structure keeps the positions of the current one.
+     */
+    FusedDatasetExpression withRename(Map<String, String> fromTo, DataStructure newStructure) {
+        Map<String, Integer> newLayout = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : layout.entrySet()) {
+            newLayout.put(fromTo.getOrDefault(entry.getKey(), entry.getKey()), entry.getValue());
+        }
+        return new FusedDatasetExpression(source, sourceNames, newStructure, newLayout, calcSlots, filters);
+    }
+
+    /**
+     * Adds a keep/drop step. The new structure contains the kept columns only.
+     */
+    FusedDatasetExpression withProject(DataStructure newStructure) {
+        Map<String, Integer> newLayout = new LinkedHashMap<>();
+        for (String name : newStructure.keySet()) {
+            newLayout.put(name, layout.get(name));
+        }
+        return new FusedDatasetExpression(source, sourceNames, newStructure, newLayout, calcSlots, filters);
+    }
+
+    /**
+     * Returns the expression the chain reads.
+     */
+    DatasetExpression getSource() {
+        return source;
+    }
+
+    /**
+     * Returns true if the components are components of the source that reach the current structure unchanged,
+     * neither calculated nor renamed.
+     */
+    boolean readsSource(Set<String> components) {
+        for (String component : components) {
+            var slot = layout.get(component);
+            if (slot == null || slot >= sourceNames.size() || !sourceNames.get(slot).equals(component)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Replaces the source of the chain by an expression with the same structure.
+     */
+    FusedDatasetExpression withSource(DatasetExpression newSource) {
+        return new FusedDatasetExpression(newSource, sourceNames, structure, layout, calcSlots, filters);
+    }
+
+    /**
+     * Returns true if the chain only renames and keeps components of the source.
+     */
+    boolean isProjection() {
+        return calcSlots.isEmpty() && filters.isEmpty();
+    }
+
+    /**
+     * Returns the names, in the source, of the components of the current structure.
+     */
+    Set<String> getSourceNames() {
+        Set<String> names = new LinkedHashSet<>();
+        for (Integer slot : layout.values()) {
+            if (slot < sourceNames.size()) {
+                names.add(sourceNames.get(slot));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Replaces the source of a projection by an expression keeping at least the components the projection
+     * reads, with the same names.
+     */
+    FusedDatasetExpression withProjectedSource(DatasetExpression newSource) {
+        var newSourceNames = List.copyOf(newSource.getDataStructure().keySet());
+        Map<String, Integer> newLayout = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : layout.entrySet()) {
+            newLayout.put(entry.getKey(), newSourceNames.indexOf(sourceNames.get(entry.getValue())));
+        }
+        return new FusedDatasetExpression(newSource, newSourceNames, structure, newLayout, List.of(), List.of());
+    }
+
+    @Override
+    public Dataset resolve(Map<String, Object> context) {
+        var dataset = source.resolve(context);
+        var sourceStructure = dataset.getDataStructure();
+        int[] sourceIndexes = new int[sourceNames.size()];
+        Class<?>[] sourceTypes = new Class<?>[sourceNames.size()];
+        for (int i = 0; i < sourceIndexes.length; i++) {
+            sourceIndexes[i] = sourceStructure.indexOfKey(sourceNames.get(i));
+            sourceTypes[i] = sourceStructure.get(sourceNames.get(i)).getType();
+        }
+        int[] outputSlots = layout.values().stream().mapToInt(Integer::intValue).toArray();
+        return new StreamDataset(structure, sortOrder(dataset.getSortOrder()), () -> batches(dataset, sourceIndexes, sourceTypes)
+                .flatMap(slots -> process(slots, outputSlots)));
+    }
+
+    /**
+     * Splits the source dataset in batches of {@link #BATCH_SIZE} rows. The columns of a {@link ColumnarDataset}
+     * are read directly, without creating the source data points.
+     */
+    private Stream<Slots> batches(Dataset dataset, int[] sourceIndexes, Class<?>[] sourceTypes) {
+        if (dataset instanceof ColumnarDataset) {
+            var columnar = (ColumnarDataset) dataset;
+            return IntStream.iterate(0, from -> from < columnar.size(), from -> from + BATCH_SIZE)
+                    .mapToObj(from -> new ColumnSlots(columnar, sourceIndexes, from,
+                            Math.min(from + BATCH_SIZE, columnar.size())));
+        }
+        var dataPoints = dataset.stream().iterator();
+        var batches = new Iterator<Slots>() {
+            @Override
+            public boolean hasNext() {
+                return dataPoints.hasNext();
+            }
+
+            @Override
+            public Slots next() {
+                List<DataPoint> batch = new ArrayList<>(BATCH_SIZE);
+                while (dataPoints.hasNext() && batch.size() < BATCH_SIZE) {
+                    batch.add(dataPoints.next());
+                }
+                return new DataPointSlots(batch, sourceIndexes, sourceTypes);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(batches, Spliterator.ORDERED), false);
+    }
+
+    /**
+     * Returns the data points of the final structure for the rows of a batch that no filter rejects.
+     */
+    private Stream<DataPoint> process(Slots slots, int[] outputSlots) {
+        int selected = slots.size;
+        for (Step filter : filters) {
+            if (selected == 0) {
+                return Stream.empty();
+            }
+            var result = filter.expression.resolve(new StepBatch(slots, filter));
+            selected = 0;
+            for (int i = 0; i < slots.size; i++) {
+                if (slots.selected[i]) {
+                    slots.selected[i] = Boolean.TRUE.equals(result.get(i));
+                    if (slots.selected[i]) selected++;
+                }
+            }
+        }
+        var vectors = new ColumnVector[outputSlots.length];
+        for (int j = 0; j < outputSlots.length; j++) {
+            vectors[j] = slots.getObjects(outputSlots[j]);
+        }
+        List<DataPoint> dataPoints = new ArrayList<>(selected);
+        for (int i = 0; i < slots.size; i++) {
+            if (slots.selected[i]) {
+                var dataPoint = new DataPoint(structure);
+                for (int j = 0; j < vectors.length; j++) {
+                    dataPoint.set(j, vectors[j].get(i));
+                }
+                dataPoints.add(dataPoint);
+            }
+        }
+        return dataPoints.stream();
+    }
+
+    /**
+     * Returns the leading components of the source sort order that reach the final structure unchanged,
+     * under their final names.
+     */
+    private List<String> sortOrder(List<String> sourceOrder) {
+        Map<Integer, String> names = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : layout.entrySet()) {
+            names.put(entry.getValue(), entry.getKey());
+        }
+        List<String> sortOrder = new ArrayList<>();
+        for (String sourceName : sourceOrder) {
+            var name = names.get(sourceNames.indexOf(sourceName));
+            if (name == null) {
+                break;
+            }
+            sortOrder.add(name);
+        }
+        return sortOrder;
+    }
+
+    @Override
+    public DataStructure getDataStructure() {
+        return structure;
+    }
+
+    /**
+     * An expression, with the structure and the mapping between names and slots it is resolved with.
+     */
+    private static final class Step {
+
+        private final ResolvableExpression expression;
+        private final DataStructure structure;
+        private final Map<String, Integer> layout;
+        private final int[] slots;
+
+        private Step(ResolvableExpression expression, DataStructure structure, Map<String, Integer> layout) {
+            this.expression = expression;
+            this.structure = structure;
+            this.layout = layout;
+            this.slots = layout.values().stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * The slots of a batch of source rows, as vectors, and the rows of the batch still selected by the filters.
+     */
+    private abstract class Slots {
+
+        private final int size;
+        private final boolean[] selected;
+        private final ColumnVector[] vectors;
+        private final ColumnVector[] objects;
+
+        private Slots(int size) {
+            this.size = size;
+            this.selected = new boolean[size];
+            Arrays.fill(selected, true);
+            this.vectors = new ColumnVector[sourceNames.size() + calcSlots.size()];
+            this.objects = new ColumnVector[sourceNames.size()];
+        }
+
+        private ColumnVector get(int slot) {
+            var vector = vectors[slot];
+            if (vector == null) {
+                if (slot < sourceNames.size()) {
+                    vector = read(slot);
+                } else {
+                    var step = calcSlots.get(slot - sourceNames.size());
+                    vector = step.expression.resolve(new StepBatch(this, step));
+                }
+                vectors[slot] = vector;
+            }
+            return vector;
+        }
+
+        /**
+         * Returns the values of a slot to copy or to read row by row, without converting the source values.
+         */
+        private ColumnVector getObjects(int slot) {
+            if (slot >= sourceNames.size()) {
+                return get(slot);
+            }
+            var vector = objects[slot];
+            if (vector == null) {
+                vector = readObjects(slot);
+                objects[slot] = vector;
+            }
+            return vector;
+        }
+
+        abstract ColumnVector read(int slot);
+
+        ColumnVector readObjects(int slot) {
+            return get(slot);
+        }
+    }
+
+    /**
+     * The slots of a batch of source data points.
+     */
+    private final class DataPointSlots extends Slots {
+
+        private final List<DataPoint> dataPoints;
+        private final int[] sourceIndexes;
+        private final Class<?>[] sourceTypes;
+        private final Object[][] values;
+
+        private DataPointSlots(List<DataPoint> dataPoints, int[] sourceIndexes, Class<?>[] sourceTypes) {
+            super(dataPoints.size());
+            this.dataPoints = dataPoints;
+            this.sourceIndexes = sourceIndexes;
+            this.sourceTypes = sourceTypes;
+            this.values = new Object[sourceIndexes.length][];
+        }
+
+        private Object[] values(int slot) {
+            if (values[slot] == null) {
+                var slotValues = new Object[dataPoints.size()];
+                int index = sourceIndexes[slot];
+                for (int i = 0; i < slotValues.length; i++) {
+                    slotValues[i] = dataPoints.get(i).get(index);
+                }
+                values[slot] = slotValues;
+            }
+            return values[slot];
+        }
+
+        @Override
+        ColumnVector read(int slot) {
+            return ColumnVector.of(sourceTypes[slot], values(slot));
+        }
+
+        @Override
+        ColumnVector readObjects(int slot) {
+            return new ColumnVector.ObjectVector(values(slot));
+        }
+    }
+
+    /**
+     * The slots of a range of rows of a columnar dataset.
+     */
+    private final class ColumnSlots extends Slots {
+
+        private final ColumnarDataset dataset;
+        private final int[] sourceIndexes;
+        private final int from;
+        private final int to;
+
+        private ColumnSlots(ColumnarDataset dataset, int[] sourceIndexes, int from, int to) {
+            super(to - from);
+            this.dataset = dataset;
+            this.sourceIndexes = sourceIndexes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        ColumnVector read(int slot) {
+            return dataset.getColumn(sourceIndexes[slot]).getVector(from, to);
+        }
+    }
+
+    /**
+     * A {@link Batch} view of the slots with the structure of one step.
+     */
+    private static final class StepBatch implements Batch {
+
+        private final Slots slots;
+        private final Step step;
+
+        private StepBatch(Slots slots, Step step) {
+            this.slots = slots;
+            this.step = step;
+        }
+
+        @Override
+        public int size() {
+            return slots.size;
+        }
+
+        @Override
+        public boolean isSelected(int index) {
+            return slots.selected[index];
+        }
+
+        @Override
+        public IndexedRow getRow(int index) {
+            return new View(slots, step, index);
+        }
+
+        @Override
+        public ColumnVector getColumn(String name) {
+            var slot = step.layout.get(name);
+            if (slot == null) {
+                throw new IllegalArgumentException("unknown column " + name);
+            }
+            return slots.get(slot);
+        }
+    }
+
+    /**
+     * A {@link Map} and {@link IndexedRow} view of one row of the slots with the structure of one step.
+     * <p>
+     * The methods put, remove, putAll and clear are not supported.
+     */
+    private static final class View extends AbstractMap<String, Object> implements IndexedRow {
+
+        private final Slots slots;
+        private final Step step;
+        private final int row;
+
+        private View(Slots slots, Step step, int row) {
+            this.slots = slots;
+            this.step = step;
+            this.row = row;
+        }
+
+        @Override
+        public DataStructure getDataStructure() {
+            return step.structure;
+        }
+
+        @Override
+        public Object get(int index) {
+            return slots.getObjects(step.slots[index]).get(row);
+        }
+
+        @Override
+        public Map<String, Object> asMap() {
+            return this;
+        }
+
+        @Override
+        public Object get(Object key) {
+            var slot = step.layout.get(key);
+            return slot == null ? null : slots.getObjects(slot).get(row);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return step.layout.containsKey(key);
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return step.layout.keySet().stream()
+                    .map(name -> new SimpleImmutableEntry<>(name, get(name)))
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+        }
+    }
+}
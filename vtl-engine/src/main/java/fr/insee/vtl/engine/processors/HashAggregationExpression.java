@@ -0,0 +1,385 @@
+package fr.insee.vtl.engine.processors;
+
+import fr.insee.vtl.model.*;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+import static fr.insee.vtl.model.Structured.DataPoint;
+import static fr.insee.vtl.model.Structured.DataStructure;
+
+/**
+ * The aggregation of the data points of a dataset by group, using a hash table of the group keys.
+ * <p>
+ * The dataset is read in batches of {@link FusedDatasetExpression#BATCH_SIZE} rows. For each batch, the group
+ * of every row is found in an open addressing table that stores the key of each group once, so that no key is
+ * created for the rows of an existing group. The aggregations are then accumulated for the whole batch, by
+ * group, with the {@link AggregationExpression.Accumulator}s of the aggregations. The aggregations that only
+ * provide a collector are accumulated row by row.
+ * <p>
+ * With a pool, the dataset is split in consecutive partitions that are aggregated in parallel, each in its own
+ * table. The tables are then merged, in the order of the partitions, by combining the accumulators.
+ * <p>
+ * The result is sorted by the group keys.
+ */
+final class HashAggregationExpression extends DatasetExpression {
+
+    private final DatasetExpression expression;
+    private final DataStructure structure;
+    private final Map<String, AggregationExpression> aggregations;
+    private final List<String> groupNames;
+    private final ForkJoinPool pool;
+
+    HashAggregationExpression(DatasetExpression expression, DataStructure structure,
+                              Map<String, AggregationExpression> aggregations, ForkJoinPool pool) {
+        this.expression = Objects.requireNonNull(expression);
+        this.structure = Objects.requireNonNull(structure);
+        this.aggregations = Objects.requireNonNull(aggregations);
+        this.pool = pool;
+        // The components of the structure that are not aggregated are the components grouped by.
+        this.groupNames = structure.keySet().stream()
+                .filter(name -> !aggregations.containsKey(name))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Dataset resolve(Map<String, Object> context) {
+        var dataset = expression.resolve(context);
+        Partition result;
+        if (pool == null) {
+            result = new Partition();
+            DatasetBatch.forEach(dataset, FusedDatasetExpression.BATCH_SIZE, result::accumulate);
+        } else {
+            result = aggregateInParallel(dataset);
+        }
+
+        var table = result.table;
+        var groupIndexes = new int[groupNames.size()];
+        for (int k = 0; k < groupIndexes.length; k++) {
+            groupIndexes[k] = structure.indexOfKey(groupNames.get(k));
+        }
+        List<DataPoint> dataPoints = new ArrayList<>(table.size());
+        for (int group : table.sortedGroups()) {
+            var dataPoint = new DataPoint(structure);
+            var key = table.getKey(group);
+            for (int k = 0; k < groupIndexes.length; k++) {
+                dataPoint.set(groupIndexes[k], key[k]);
+            }
+            for (Map.Entry<String, AggregationExpression.Accumulator> entry : result.accumulators.entrySet()) {
+                dataPoint.set(entry.getKey(), entry.getValue().get(group));
+            }
+            dataPoints.add(dataPoint);
+        }
+        return new InMemoryDataset(dataPoints, structure, groupNames);
+    }
+
+    private Partition aggregateInParallel(Dataset dataset) {
+        // Split in more partitions than threads so that a slow partition does not hold the others.
+        int size = dataset instanceof ColumnarDataset
+                ? ((ColumnarDataset) dataset).size()
+                : dataset.getDataPoints().size();
+        int partitionSize = Math.max(FusedDatasetExpression.BATCH_SIZE,
+                (size + pool.getParallelism() * 4 - 1) / (pool.getParallelism() * 4));
+        List<ForkJoinTask<Partition>> tasks = new ArrayList<>();
+        for (int from = 0; from < size; from += partitionSize) {
+            int start = from;
+            int end = Math.min(size, from + partitionSize);
+            tasks.add(pool.submit(() -> {
+                var partition = new Partition();
+                DatasetBatch.forEach(dataset, start, end, FusedDatasetExpression.BATCH_SIZE, partition::accumulate);
+                return partition;
+            }));
+        }
+        var result = new Partition();
+        for (ForkJoinTask<Partition> task : tasks) {
+            result.combine(task.join());
+        }
+        return result;
+    }
+
+    /**
+     * The groups and the accumulators of the data points of a partition.
+     */
+    private final class Partition {
+
+        private final GroupTable table = new GroupTable(groupNames.size());
+        private final Map<String, AggregationExpression.Accumulator> accumulators = new LinkedHashMap<>();
+        private final ColumnVector[] keys = new ColumnVector[groupNames.size()];
+
+        private Partition() {
+            for (Map.Entry<String, AggregationExpression> entry : aggregations.entrySet()) {
+                var accumulator = entry.getValue().newAccumulator();
+                accumulators.put(entry.getKey(), accumulator != null
+                        ? accumulator
+                        : new CollectorAccumulator(entry.getValue()));
+            }
+        }
+
+        private void accumulate(DatasetBatch batch) {
+            for (int k = 0; k < keys.length; k++) {
+                keys[k] = batch.getColumn(groupNames.get(k));
+            }
+            var groups = table.groupsOf(keys, batch.size());
+            for (AggregationExpression.Accumulator accumulator : accumulators.values()) {
+                accumulator.accumulate(batch, groups, table.size());
+            }
+        }
+
+        private void combine(Partition other) {
+            var groups = new int[other.table.size()];
+            for (int group = 0; group < groups.length; group++) {
+                groups[group] = table.groupOf(other.table.getKey(group), other.table.hashes[group]);
+            }
+            for (Map.Entry<String, AggregationExpression.Accumulator> entry : accumulators.entrySet()) {
+                entry.getValue().combine(other.accumulators.get(entry.getKey()), groups, table.size());
+            }
+        }
+    }
+
+    @Override
+    public DataStructure getDataStructure() {
+        return structure;
+    }
+
+    /**
+     * The groups found in the rows, numbered from 0 in the order they are found.
+     * <p>
+     * The table maps the hash of a key to the number of its group, with linear probing. The keys are compared
+     * with the values of the vectors without boxing them.
+     */
+    private static final class GroupTable {
+
+        private final int width;
+        private final List<Object[]> keys = new ArrayList<>();
+        private int[] hashes = new int[16];
+        private int[] slots = new int[32];
+
+        private GroupTable(int width) {
+            this.width = width;
+        }
+
+        private int size() {
+            return keys.size();
+        }
+
+        private Object[] getKey(int group) {
+            return keys.get(group);
+        }
+
+        /**
+         * Returns the group of each row, adding the new groups to the table.
+         */
+        private int[] groupsOf(ColumnVector[] vectors, int rows) {
+            var groups = new int[rows];
+            for (int i = 0; i < rows; i++) {
+                int hash = 0;
+                for (ColumnVector vector : vectors) {
+                    hash = 31 * hash + hash(vector, i);
+                }
+                groups[i] = find(vectors, i, hash);
+            }
+            return groups;
+        }
+
+        private int find(ColumnVector[] vectors, int row, int hash) {
+            int mask = slots.length - 1;
+            int slot = mix(hash) & mask;
+            while (slots[slot] != 0) {
+                int group = slots[slot] - 1;
+                if (hashes[group] == hash && matches(vectors, row, keys.get(group))) {
+                    return group;
+                }
+                slot = (slot + 1) & mask;
+            }
+            var key = new Object[width];
+            for (int k = 0; k < width; k++) {
+                key[k] = vectors[k].get(row);
+            }
+            return add(slot, key, hash);
+        }
+
+        /**
+         * Returns the group of a key of another table, adding it to the table if it is new. The hash of the
+         * values of a key is the hash of their vectors, so the hash of the other table is used as is.
+         */
+        private int groupOf(Object[] key, int hash) {
+            int mask = slots.length - 1;
+            int slot = mix(hash) & mask;
+            while (slots[slot] != 0) {
+                int group = slots[slot] - 1;
+                if (hashes[group] == hash && Arrays.equals(key, keys.get(group))) {
+                    return group;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return add(slot, key, hash);
+        }
+
+        private int add(int slot, Object[] key, int hash) {
+            int group = keys.size();
+            keys.add(key);
+            if (group == hashes.length) {
+                hashes = Arrays.copyOf(hashes, group * 2);
+            }
+            hashes[group] = hash;
+            slots[slot] = group + 1;
+            if (keys.size() * 2 > slots.length) {
+                rehash();
+            }
+            return group;
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int mask = slots.length - 1;
+            for (int group = 0; group < keys.size(); group++) {
+                int slot = mix(hashes[group]) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = group + 1;
+            }
+        }
+
+        private static int mix(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+
+        private static int hash(ColumnVector vector, int row) {
+            if (vector.isNull(row)) {
+                return 0;
+            } else if (vector instanceof ColumnVector.LongVector) {
+                return Long.hashCode(((ColumnVector.LongVector) vector).getValues()[row]);
+            } else if (vector instanceof ColumnVector.DoubleVector) {
+                return Double.hashCode(((ColumnVector.DoubleVector) vector).getValues()[row]);
+            } else if (vector instanceof ColumnVector.BooleanVector) {
+                return Boolean.hashCode(((ColumnVector.BooleanVector) vector).getValues()[row]);
+            }
+            return vector.get(row).hashCode();
+        }
+
+        private static boolean matches(ColumnVector[] vectors, int row, Object[] key) {
+            for (int k = 0; k < key.length; k++) {
+                if (!matches(vectors[k], row, key[k])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean matches(ColumnVector vector, int row, Object value) {
+            if (vector.isNull(row) || value == null) {
+                return vector.isNull(row) && value == null;
+            } else if (vector instanceof ColumnVector.LongVector) {
+                return ((ColumnVector.LongVector) vector).getValues()[row] == (Long) value;
+            } else if (vector instanceof ColumnVector.DoubleVector) {
+                return Double.compare(((ColumnVector.DoubleVector) vector).getValues()[row], (Double) value) == 0;
+            } else if (vector instanceof ColumnVector.BooleanVector) {
+                return ((ColumnVector.BooleanVector) vector).getValues()[row] == (Boolean) value;
+            }
+            return vector.get(row).equals(value);
+        }
+
+        /**
+         * Returns the groups sorted by key, in natural order with null values first.
+         * <p>
+         * The indexes of the groups are sorted in an array by a merge sort, so that they are not boxed.
+         */
+        private int[] sortedGroups() {
+            var groups = new int[keys.size()];
+            for (int group = 0; group < groups.length; group++) {
+                groups[group] = group;
+            }
+            sort(groups, new int[groups.length], 0, groups.length);
+            return groups;
+        }
+
+        private void sort(int[] groups, int[] buffer, int from, int to) {
+            if (to - from < 2) {
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            sort(groups, buffer, from, middle);
+            sort(groups, buffer, middle, to);
+            if (compare(groups[middle - 1], groups[middle]) <= 0) {
+                return;
+            }
+            System.arraycopy(groups, from, buffer, from, to - from);
+            int left = from;
+            int right = middle;
+            for (int i = from; i < to; i++) {
+                if (right == to || left < middle && compare(buffer[left], buffer[right]) <= 0) {
+                    groups[i] = buffer[left++];
+                } else {
+                    groups[i] = buffer[right++];
+                }
+            }
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private int compare(int first, int second) {
+            var firstKey = keys.get(first);
+            var secondKey = keys.get(second);
+            for (int k = 0; k < width; k++) {
+                if (firstKey[k] == null || secondKey[k] == null) {
+                    if (firstKey[k] != secondKey[k]) {
+                        return firstKey[k] == null ? -1 : 1;
+                    }
+                } else {
+                    int comparison = ((Comparable) firstKey[k]).compareTo(secondKey[k]);
+                    if (comparison != 0) {
+                        return comparison;
+                    }
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * An accumulator aggregating each group with a collector, row by row.
+     */
+    private static final class CollectorAccumulator extends AggregationExpression.Accumulator {
+
+        private final Collector<DataPoint, Object, Object> collector;
+        private final List<Object> containers = new ArrayList<>();
+
+        private CollectorAccumulator(Collector<DataPoint, Object, Object> collector) {
+            this.collector = collector;
+        }
+
+        @Override
+        protected void grow(int capacity) {
+            while (containers.size() < capacity) {
+                containers.add(collector.supplier().get());
+            }
+        }
+
+        @Override
+        protected void accumulate(Batch batch, int[] groups) {
+            var accumulator = collector.accumulator();
+            for (int i = 0; i < batch.size(); i++) {
+                if (batch.isSelected(i)) {
+                    accumulator.accept(containers.get(groups[i]), (DataPoint) batch.getRow(i));
+                }
+            }
+        }
+
+        @Override
+        protected void combine(AggregationExpression.Accumulator other, int[] groups) {
+            var combiner = collector.combiner();
+            var otherContainers = ((CollectorAccumulator) other).containers;
+            for (int i = 0; i < groups.length; i++) {
+                containers.set(groups[i], combiner.apply(containers.get(groups[i]), otherContainers.get(i)));
+            }
+        }
+
+        @Override
+        public Object get(int group) {
+            return collector.finisher().apply(containers.get(group));
+        }
+    }
+}
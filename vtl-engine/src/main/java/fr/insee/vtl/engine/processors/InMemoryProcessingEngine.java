@@ -1,13 +1,13 @@
 package fr.insee.vtl.engine.processors;
 
-import fr.insee.vtl.engine.utils.MapCollector;
 import fr.insee.vtl.model.*;
 
 import javax.script.ScriptEngine;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static fr.insee.vtl.model.Structured.*;
 
@@ -16,6 +16,35 @@ import static fr.insee.vtl.model.Structured.*;
  */
 public class InMemoryProcessingEngine implements ProcessingEngine {
 
+    /**
+     * The pools aggregating datasets, shared by the engines with the same parallelism. The idle threads of a pool
+     * terminate, so that the pools do not need to be shut down.
+     */
+    private static final Map<Integer, ForkJoinPool> AGGREGATION_POOLS = new ConcurrentHashMap<>();
+
+    private final ForkJoinPool aggregationPool;
+
+    /**
+     * Constructor of an engine that aggregates sequentially.
+     */
+    public InMemoryProcessingEngine() {
+        this(1);
+    }
+
+    /**
+     * Constructor taking the number of threads used to aggregate datasets.
+     *
+     * @param aggregationParallelism The number of threads used to aggregate a dataset, 1 to aggregate sequentially.
+     */
+    public InMemoryProcessingEngine(int aggregationParallelism) {
+        if (aggregationParallelism < 1) {
+            throw new IllegalArgumentException("the aggregation parallelism must be positive");
+        }
+        this.aggregationPool = aggregationParallelism > 1
+                ? AGGREGATION_POOLS.computeIfAbsent(aggregationParallelism, ForkJoinPool::new)
+                : null;
+    }
+
     @Override
     public DatasetExpression executeCalc(DatasetExpression expression, Map<String, ResolvableExpression> expressions,
                                          Map<String, Dataset.Role> roles) {
@@ -30,49 +59,40 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
             );
         }
 
-        return new DatasetExpression() {
-            @Override
-            public Dataset resolve(Map<String, Object> context) {
-                var dataset = expression.resolve(context);
-                List<List<Object>> result = dataset.getDataPoints().stream().map(dataPoint -> {
-                    var newDataPoint = new DataPoint(newStructure, dataPoint);
-                    for (String columnName : expressions.keySet()) {
-                        newDataPoint.set(columnName, expressions.get(columnName).resolve(dataPoint));
-                    }
-                    return newDataPoint;
-                }).collect(Collectors.toList());
-                return new InMemoryDataset(result, newStructure);
-            }
-
-            @Override
-            public DataStructure getDataStructure() {
-                return newStructure;
-            }
-        };
+        return FusedDatasetExpression.of(expression).withCalc(expressions, newStructure);
     }
 
     @Override
     public DatasetExpression executeFilter(DatasetExpression expression, ResolvableExpression filter) {
-        return new DatasetExpression() {
+        return FusedDatasetExpression.of(expression).withFilter(filter);
+    }
 
-            @Override
-            public DataStructure getDataStructure() {
-                return expression.getDataStructure();
+    /**
+     * Applies the filter to the sides of the joins it only reads components of, when the result is the same.
+     * The rows removed from a side are then not joined. A filter on a chain of row-local operations over a
+     * join is applied to the join if it only reads join components the chain does not calculate or rename.
+     */
+    @Override
+    public DatasetExpression executeFilter(DatasetExpression expression, ResolvableExpression filter,
+                                           Set<String> components) {
+        if (expression instanceof FusedDatasetExpression) {
+            var fused = (FusedDatasetExpression) expression;
+            if (fused.getSource() instanceof JoinExpression && fused.readsSource(components)) {
+                return fused.withSource(executeFilter(fused.getSource(), filter, components));
             }
-
-            @Override
-            public Dataset resolve(Map<String, Object> context) {
-                Dataset resolve = expression.resolve(context);
-                List<List<Object>> result = resolve.getDataPoints().stream()
-                        .filter(map -> {
-                            var res = filter.resolve(map);
-                            if (res == null) return false;
-                            return (boolean) res;
-                        })
-                        .collect(Collectors.toList());
-                return new InMemoryDataset(result, getDataStructure());
+        }
+        if (expression instanceof JoinExpression) {
+            var join = (JoinExpression) expression;
+            boolean filterLeft = join.canFilterLeft(components);
+            boolean filterRight = join.canFilterRight(components);
+            if (filterLeft || filterRight) {
+                return new JoinExpression(join.identifiers,
+                        filterLeft ? executeFilter(join.left, filter, components) : join.left,
+                        filterRight ? executeFilter(join.right, filter, components) : join.right,
+                        join.keepLeft, join.keepRight);
             }
-        };
+        }
+        return executeFilter(expression, filter);
     }
 
     @Override
@@ -87,26 +107,7 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
                                 component.getRole())
                 ).collect(Collectors.toList());
         DataStructure renamedStructure = new DataStructure(structure);
-        return new DatasetExpression() {
-            @Override
-            public Dataset resolve(Map<String, Object> context) {
-                var result = expression.resolve(context).getDataPoints().stream()
-                        .map(dataPoint -> {
-                            var newDataPoint = new DataPoint(renamedStructure, dataPoint);
-                            for (String fromName : fromTo.keySet()) {
-                                var toName = fromTo.get(fromName);
-                                newDataPoint.set(toName, dataPoint.get(fromName));
-                            }
-                            return newDataPoint;
-                        }).collect(Collectors.toList());
-                return new InMemoryDataset(result, getDataStructure());
-            }
-
-            @Override
-            public DataStructure getDataStructure() {
-                return renamedStructure;
-            }
-        };
+        return FusedDatasetExpression.of(expression).withRename(fromTo, renamedStructure);
     }
 
     @Override
@@ -117,79 +118,62 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
                 .collect(Collectors.toList());
         var newStructure = new DataStructure(structure);
 
-        return new DatasetExpression() {
-            @Override
-            public Dataset resolve(Map<String, Object> context) {
-                var columnNames = getColumnNames();
-                List<List<Object>> result = expression.resolve(context).getDataPoints().stream()
-                        .map(data -> {
-                            var projectedDataPoint = new DataPoint(newStructure);
-                            for (String column : columnNames) {
-                                projectedDataPoint.set(column, data.get(column));
-                            }
-                            return projectedDataPoint;
-                        }).collect(Collectors.toList());
-                return new InMemoryDataset(result, getDataStructure());
+        var projection = FusedDatasetExpression.of(expression).withProject(newStructure);
+        if (projection.isProjection() && projection.getSource() instanceof JoinExpression) {
+            // Only join the components that are kept.
+            var join = (JoinExpression) projection.getSource();
+            var prunedJoin = pruneJoin(join, projection.getSourceNames());
+            if (prunedJoin != join) {
+                return projection.withProjectedSource(prunedJoin);
             }
+        }
+        return projection;
+    }
 
-            @Override
-            public DataStructure getDataStructure() {
-                return newStructure;
-            }
-        };
+    /**
+     * Returns a join of the sides keeping only the given components and the identifiers, or the join itself
+     * if it has no other component.
+     */
+    private JoinExpression pruneJoin(JoinExpression join, Set<String> components) {
+        var columns = new HashSet<>(components);
+        for (Component identifier : join.identifiers) {
+            columns.add(identifier.getName());
+        }
+        if (columns.containsAll(join.structure.keySet())) {
+            return join;
+        }
+        return new JoinExpression(join.identifiers, pruneSide(join.left, columns), pruneSide(join.right, columns),
+                join.keepLeft, join.keepRight);
+    }
+
+    private DatasetExpression pruneSide(DatasetExpression side, Set<String> columns) {
+        var sideColumns = side.getDataStructure().keySet();
+        if (columns.containsAll(sideColumns)) {
+            return side;
+        }
+        var keptColumns = sideColumns.stream().filter(columns::contains).collect(Collectors.toList());
+        return executeProject(side, keptColumns);
     }
 
+    /**
+     * Streams the first data point of each identifier values, see {@link UnionExpression}.
+     */
     @Override
     public DatasetExpression executeUnion(List<DatasetExpression> datasets) {
-        return new DatasetExpression() {
-            @Override
-            public Dataset resolve(Map<String, Object> context) {
-                Stream<DataPoint> stream = Stream.empty();
-                for (DatasetExpression datasetExpression : datasets) {
-                    var dataset = datasetExpression.resolve(context);
-                    stream = Stream.concat(stream, dataset.getDataPoints().stream());
-                }
-                List<DataPoint> data = stream.distinct().collect(Collectors.toList());
-                return new InMemoryDataset(data, getDataStructure());
-            }
-
-            @Override
-            public DataStructure getDataStructure() {
-                return (datasets.get(0)).getDataStructure();
-            }
-        };
+        return new UnionExpression(datasets);
     }
 
+    /**
+     * Aggregates the data points with a hash table of the groups, see {@link HashAggregationExpression}. The
+     * components grouped by are the components of the structure that are not aggregated, so the key extractor
+     * is not used. The partitions of the data points are aggregated in parallel if the engine has an
+     * aggregation parallelism greater than 1.
+     */
     @Override
     public DatasetExpression executeAggr(DatasetExpression expression, DataStructure structure,
                                          Map<String, AggregationExpression> collectorMap,
                                          Function<DataPoint, Map<String, Object>> keyExtractor) {
-        return new DatasetExpression() {
-            @Override
-            public Dataset resolve(Map<String, Object> context) {
-
-                List<DataPoint> data = expression.resolve(Map.of()).getDataPoints();
-                MapCollector collector = new MapCollector(structure, collectorMap);
-                List<DataPoint> collect = data.stream()
-                        .collect(Collectors.groupingBy(keyExtractor, collector))
-                        .entrySet().stream()
-                        .map(e -> {
-                            DataPoint dataPoint = e.getValue();
-                            Map<String, Object> identifiers = e.getKey();
-                            for (Map.Entry<String, Object> identifierElement : identifiers.entrySet()) {
-                                dataPoint.set(identifierElement.getKey(), identifierElement.getValue());
-                            }
-                            return dataPoint;
-                        }).collect(Collectors.toList());
-
-                return new InMemoryDataset(collect, structure);
-            }
-
-            @Override
-            public DataStructure getDataStructure() {
-                return structure;
-            }
-        };
+        return new HashAggregationExpression(expression, structure, collectorMap, aggregationPool);
     }
 
     @Override
@@ -235,7 +219,7 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
     /**
      * Returns a structure with the common identifiers only once.
      */
-    private DataStructure createCommonStructure(List<Component> identifiers, DatasetExpression left, DatasetExpression right) {
+    private static DataStructure createCommonStructure(List<Component> identifiers, DatasetExpression left, DatasetExpression right) {
         List<Component> components = new ArrayList<>(identifiers);
         for (Component component : left.getDataStructure().values()) {
             if (!identifiers.contains(component)) {
@@ -250,116 +234,302 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
         return new DataStructure(components);
     }
 
-    // TODO JavaDoc for the private methods below
-    private Comparator<DataPoint> createPredicate(List<Component> identifiers) {
-        return (dl, dr) -> {
-            for (Component identifier : identifiers) {
-                if (!Objects.equals(dl.get(identifier.getName()), dr.get(identifier.getName()))) {
-                    return -1;
-                }
+    /**
+     * Returns the positions of the given columns in a structure.
+     */
+    private static int[] indexesOf(DataStructure structure, List<String> columns) {
+        int[] indexes = new int[columns.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = structure.indexOfKey(columns.get(i));
+        }
+        return indexes;
+    }
+
+    /**
+     * Returns the identifier tuple of a data point, used as the key of the hash tables.
+     */
+    private static List<Object> keyOf(DataPoint dataPoint, int[] keyIndexes) {
+        Object[] key = new Object[keyIndexes.length];
+        for (int i = 0; i < keyIndexes.length; i++) {
+            key[i] = dataPoint.get(keyIndexes[i]);
+        }
+        return Arrays.asList(key);
+    }
+
+    /**
+     * Copies the values of two data points into a new data point of the joined structure.
+     * <p>
+     * The index arrays map the positions of each side to the positions in the joined structure. A null
+     * data point leaves the corresponding columns empty.
+     */
+    private static DataPoint merge(DataStructure structure,
+                                   DataPoint firstPoint, int[] firstIndexes,
+                                   DataPoint secondPoint, int[] secondIndexes) {
+        var mergedPoint = new DataPoint(structure);
+        if (firstPoint != null) {
+            for (int i = 0; i < firstIndexes.length; i++) {
+                mergedPoint.set(firstIndexes[i], firstPoint.get(i));
             }
-            return 0;
-        };
+        }
+        if (secondPoint != null) {
+            for (int i = 0; i < secondIndexes.length; i++) {
+                mergedPoint.set(secondIndexes[i], secondPoint.get(i));
+            }
+        }
+        return mergedPoint;
     }
 
     private DatasetExpression handleInnerJoin(List<Component> identifiers, DatasetExpression left, DatasetExpression right) {
-        var structure = createCommonStructure(identifiers, left, right);
-        var predicate = createPredicate(identifiers);
+        return handleJoin(identifiers, left, right, false, false);
+    }
 
-        return new DatasetExpression() {
-            @Override
-            public Dataset resolve(Map<String, Object> context) {
-                var leftPoints = left.resolve(context).getDataPoints();
-                var rightPoints = right.resolve(context).getDataPoints();
-                List<DataPoint> result = new ArrayList<>();
-                for (DataPoint leftPoint : leftPoints) {
-                    List<DataPoint> matches = new ArrayList<>();
-                    for (DataPoint rightPoint : rightPoints) {
-                        // Check equality
-                        if (predicate.compare(leftPoint, rightPoint) == 0) {
-                            matches.add(rightPoint);
-                        }
-                    }
+    private DatasetExpression handleFullJoin(List<Component> identifiers, DatasetExpression left, DatasetExpression right) {
+        return handleJoin(identifiers, left, right, true, true);
+    }
 
-                    if (!matches.isEmpty()) {
-                        // Create merge datapoint.
-                        var mergedPoint = new DataPoint(structure);
-                        for (String leftColumn : left.getDataStructure().keySet()) {
-                            mergedPoint.set(leftColumn, leftPoint.get(leftColumn));
-                        }
-                        for (DataPoint match : matches) {
-                            var matchPoint = new DataPoint(structure, mergedPoint);
-                            for (String rightColumn : right.getDataStructure().keySet()) {
-                                matchPoint.set(rightColumn, match.get(rightColumn));
-                            }
-                            result.add(matchPoint);
-                        }
-                    }
-                }
-                return new InMemoryDataset(result, structure);
+    private DatasetExpression handleLeftJoin(List<Component> identifiers, DatasetExpression left, DatasetExpression right) {
+        return handleJoin(identifiers, left, right, true, false);
+    }
+
+    private DatasetExpression handleJoin(List<Component> identifiers, DatasetExpression left,
+                                         DatasetExpression right, boolean keepLeft, boolean keepRight) {
+        return new JoinExpression(identifiers, left, right, keepLeft, keepRight);
+    }
+
+    /**
+     * The join of two datasets on their identifiers.
+     * <p>
+     * When both datasets are sorted by the identifiers (see {@link Dataset#getSortOrder()}), they are merged
+     * in a single pass without extra memory and the result keeps the sort order. Otherwise a hash table is
+     * built on the identifier tuples of the side with the fewest data points and the other side probes it.
+     * In both cases the cost is linear in the size of the inputs.
+     * <p>
+     * The data points of a side without match are kept with empty columns for the other side when
+     * <code>keepLeft</code> or <code>keepRight</code> is true. Inner, left and full joins are all computed
+     * in a single pass.
+     */
+    private static final class JoinExpression extends DatasetExpression {
+
+        private final List<Component> identifiers;
+        private final DatasetExpression left;
+        private final DatasetExpression right;
+        private final boolean keepLeft;
+        private final boolean keepRight;
+        private final DataStructure structure;
+
+        private JoinExpression(List<Component> identifiers, DatasetExpression left, DatasetExpression right,
+                               boolean keepLeft, boolean keepRight) {
+            this.identifiers = identifiers;
+            this.left = left;
+            this.right = right;
+            this.keepLeft = keepLeft;
+            this.keepRight = keepRight;
+            this.structure = createCommonStructure(identifiers, left, right);
+        }
+
+        /**
+         * Returns true if a filter reading the given components can be applied to the left side before the join.
+         * <p>
+         * The filter must only read components of the side, and the data points of the other side without
+         * match must not be kept: they would be kept for the data points the filter removes.
+         */
+        private boolean canFilterLeft(Set<String> components) {
+            return !keepRight && left.getDataStructure().keySet().containsAll(components);
+        }
+
+        private boolean canFilterRight(Set<String> components) {
+            return !keepLeft && right.getDataStructure().keySet().containsAll(components);
+        }
+
+        @Override
+        public Dataset resolve(Map<String, Object> context) {
+            var identifierNames = identifiers.stream().map(Component::getName).collect(Collectors.toList());
+            var leftDataset = left.resolve(context);
+            var rightDataset = right.resolve(context);
+
+            List<DataPoint> result = new ArrayList<>();
+            var mergeOrder = mergeOrder(identifierNames, leftDataset, rightDataset);
+            if (mergeOrder.isPresent()) {
+                var leftSide = new JoinSide(leftDataset, structure, mergeOrder.get(), keepLeft);
+                var rightSide = new JoinSide(rightDataset, structure, mergeOrder.get(), keepRight);
+                mergeJoin(structure, leftSide, rightSide, result);
+                return new InMemoryDataset(result, structure, mergeOrder.get());
             }
 
-            @Override
-            public DataStructure getDataStructure() {
-                return structure;
+            var leftSide = new JoinSide(leftDataset, structure, identifierNames, keepLeft);
+            var rightSide = new JoinSide(rightDataset, structure, identifierNames, keepRight);
+            if (rightSide.dataPoints.size() <= leftSide.dataPoints.size()) {
+                hashJoin(structure, rightSide, leftSide, result);
+            } else {
+                hashJoin(structure, leftSide, rightSide, result);
             }
-        };
-    }
+            return new InMemoryDataset(result, structure);
+        }
 
-    private DatasetExpression handleFullJoin(List<Component> identifiers, DatasetExpression left, DatasetExpression right) {
-        // Naive implementation, left and right union.
-        // TODO: Implement a faster algorithm.
-        return executeUnion(List.of(
-                handleLeftJoin(identifiers, left, right),
-                handleLeftJoin(identifiers, right, left)
-        ));
+        @Override
+        public DataStructure getDataStructure() {
+            return structure;
+        }
     }
 
-    private DatasetExpression handleLeftJoin(List<Component> identifiers, DatasetExpression left, DatasetExpression right) {
-        var structure = createCommonStructure(identifiers, left, right);
-        var predicate = createPredicate(identifiers);
+    /**
+     * Returns the identifiers in the order both datasets are sorted by, if the identifiers are the
+     * leading components of the sort order of both datasets.
+     */
+    private static Optional<List<String>> mergeOrder(List<String> identifierNames, Dataset left, Dataset right) {
+        var leftOrder = left.getSortOrder();
+        var rightOrder = right.getSortOrder();
+        int size = identifierNames.size();
+        if (size == 0 || leftOrder.size() < size || rightOrder.size() < size) {
+            return Optional.empty();
+        }
+        var order = leftOrder.subList(0, size);
+        if (!order.equals(rightOrder.subList(0, size)) || !order.containsAll(identifierNames)) {
+            return Optional.empty();
+        }
+        return Optional.of(order);
+    }
 
-        return new DatasetExpression() {
-            @Override
-            public Dataset resolve(Map<String, Object> context) {
-                var leftPoints = left.resolve(context).getDataPoints();
-                var rightPoints = right.resolve(context).getDataPoints();
-                List<DataPoint> result = new ArrayList<>();
-                for (DataPoint leftPoint : leftPoints) {
-                    List<DataPoint> matches = new ArrayList<>();
-                    for (DataPoint rightPoint : rightPoints) {
-                        // Check equality
-                        if (predicate.compare(leftPoint, rightPoint) == 0) {
-                            matches.add(rightPoint);
-                        }
+    /**
+     * Merges two sides sorted by their keys and adds the merged data points to the result.
+     * <p>
+     * Runs of equal keys are joined with each other using their positions, so no data point is buffered.
+     */
+    private static void mergeJoin(DataStructure structure, JoinSide left, JoinSide right, List<DataPoint> result) {
+        var leftPoints = left.dataPoints;
+        var rightPoints = right.dataPoints;
+        int i = 0;
+        int j = 0;
+        while (i < leftPoints.size() && j < rightPoints.size()) {
+            var leftPoint = leftPoints.get(i);
+            int comparison = compareKeys(leftPoint, left.keyIndexes, rightPoints.get(j), right.keyIndexes);
+            if (comparison < 0) {
+                if (left.keepUnmatched) {
+                    result.add(merge(structure, leftPoint, left.indexes, null, right.indexes));
+                }
+                i++;
+            } else if (comparison > 0) {
+                if (right.keepUnmatched) {
+                    result.add(merge(structure, rightPoints.get(j), right.indexes, null, left.indexes));
+                }
+                j++;
+            } else {
+                int leftEnd = i + 1;
+                while (leftEnd < leftPoints.size()
+                       && compareKeys(leftPoints.get(leftEnd), left.keyIndexes, leftPoint, left.keyIndexes) == 0) {
+                    leftEnd++;
+                }
+                int rightEnd = j + 1;
+                while (rightEnd < rightPoints.size()
+                       && compareKeys(rightPoints.get(rightEnd), right.keyIndexes, leftPoint, left.keyIndexes) == 0) {
+                    rightEnd++;
+                }
+                for (int l = i; l < leftEnd; l++) {
+                    for (int r = j; r < rightEnd; r++) {
+                        result.add(merge(structure, leftPoints.get(l), left.indexes, rightPoints.get(r), right.indexes));
                     }
+                }
+                i = leftEnd;
+                j = rightEnd;
+            }
+        }
+        for (; left.keepUnmatched && i < leftPoints.size(); i++) {
+            result.add(merge(structure, leftPoints.get(i), left.indexes, null, right.indexes));
+        }
+        for (; right.keepUnmatched && j < rightPoints.size(); j++) {
+            result.add(merge(structure, rightPoints.get(j), right.indexes, null, left.indexes));
+        }
+    }
 
-                    // Create merge datapoint.
-                    var mergedPoint = new DataPoint(structure);
-                    for (String leftColumn : left.getDataStructure().keySet()) {
-                        mergedPoint.set(leftColumn, leftPoint.get(leftColumn));
-                    }
+    /**
+     * Compares the keys of two data points in ascending natural order, null values first.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareKeys(DataPoint first, int[] firstKey, DataPoint second, int[] secondKey) {
+        for (int k = 0; k < firstKey.length; k++) {
+            var firstValue = (Comparable) first.get(firstKey[k]);
+            var secondValue = (Comparable) second.get(secondKey[k]);
+            if (firstValue == secondValue) {
+                continue;
+            }
+            if (firstValue == null) {
+                return -1;
+            }
+            if (secondValue == null) {
+                return 1;
+            }
+            int comparison = firstValue.compareTo(secondValue);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return 0;
+    }
 
-                    if (matches.isEmpty()) {
-                        result.add(mergedPoint);
-                    } else {
-                        for (DataPoint match : matches) {
-                            var matchPoint = new DataPoint(structure, mergedPoint);
-                            for (String rightColumn : right.getDataStructure().keySet()) {
-                                matchPoint.set(rightColumn, match.get(rightColumn));
-                            }
-                            result.add(matchPoint);
-                        }
-                    }
+    /**
+     * Builds a hash table with the data points of the build side, probes it with the data points of the
+     * probe side and adds the merged data points to the result.
+     */
+    private static void hashJoin(DataStructure structure, JoinSide build, JoinSide probe, List<DataPoint> result) {
+        Map<List<Object>, JoinBucket> table = new LinkedHashMap<>(Math.max(16, build.dataPoints.size() * 4 / 3 + 1));
+        for (DataPoint dataPoint : build.dataPoints) {
+            table.computeIfAbsent(build.keyOf(dataPoint), key -> new JoinBucket()).dataPoints.add(dataPoint);
+        }
+
+        for (DataPoint probePoint : probe.dataPoints) {
+            JoinBucket bucket = table.get(probe.keyOf(probePoint));
+            if (bucket != null) {
+                bucket.matched = true;
+                for (DataPoint match : bucket.dataPoints) {
+                    result.add(merge(structure, probePoint, probe.indexes, match, build.indexes));
                 }
-                return new InMemoryDataset(result, structure);
+            } else if (probe.keepUnmatched) {
+                result.add(merge(structure, probePoint, probe.indexes, null, build.indexes));
             }
+        }
 
-            @Override
-            public DataStructure getDataStructure() {
-                return structure;
+        if (build.keepUnmatched) {
+            for (JoinBucket bucket : table.values()) {
+                if (bucket.matched) {
+                    continue;
+                }
+                for (DataPoint dataPoint : bucket.dataPoints) {
+                    result.add(merge(structure, dataPoint, build.indexes, null, probe.indexes));
+                }
             }
-        };
+        }
+    }
+
+    /**
+     * One side of a join: its data points and the positions of its columns.
+     */
+    private static final class JoinSide {
+
+        private final List<DataPoint> dataPoints;
+        private final int[] keyIndexes;
+        private final int[] indexes;
+        private final boolean keepUnmatched;
+
+        private JoinSide(Dataset dataset, DataStructure joinedStructure, List<String> keyNames,
+                         boolean keepUnmatched) {
+            var dataStructure = dataset.getDataStructure();
+            this.dataPoints = dataset.getDataPoints();
+            this.keyIndexes = indexesOf(dataStructure, keyNames);
+            this.indexes = indexesOf(joinedStructure, new ArrayList<>(dataStructure.keySet()));
+            this.keepUnmatched = keepUnmatched;
+        }
+
+        private List<Object> keyOf(DataPoint dataPoint) {
+            return InMemoryProcessingEngine.keyOf(dataPoint, keyIndexes);
+        }
+    }
+
+    /**
+     * The data points of the build side that share an identifier tuple.
+     */
+    private static final class JoinBucket {
+        private final List<DataPoint> dataPoints = new ArrayList<>(1);
+        private boolean matched = false;
     }
 
     private DatasetExpression handleCrossJoin(List<Component> identifiers, DatasetExpression left, DatasetExpression right) {
@@ -398,6 +568,8 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
      */
     public static class Factory implements ProcessingEngineFactory {
 
+        public static final String AGGREGATION_PARALLELISM = "$vtl.memory.aggregation_parallelism";
+
         @Override
         public String getName() {
             return "memory";
@@ -405,7 +577,12 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
 
         @Override
         public ProcessingEngine getProcessingEngine(ScriptEngine engine) {
-            return new InMemoryProcessingEngine();
+            Object parallelism = Optional.ofNullable(engine.get(AGGREGATION_PARALLELISM)).orElse(1);
+            if (parallelism instanceof Integer || parallelism instanceof Long) {
+                return new InMemoryProcessingEngine(((Number) parallelism).intValue());
+            } else {
+                throw new IllegalArgumentException(AGGREGATION_PARALLELISM + " must be an integer");
+            }
         }
     }
 }
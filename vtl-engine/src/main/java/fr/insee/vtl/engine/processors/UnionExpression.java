@@ -0,0 +1,148 @@
+package fr.insee.vtl.engine.processors;
+
+import fr.insee.vtl.model.Dataset;
+import fr.insee.vtl.model.DatasetExpression;
+import fr.insee.vtl.model.StreamDataset;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+import static fr.insee.vtl.model.Structured.DataPoint;
+import static fr.insee.vtl.model.Structured.DataStructure;
+
+/**
+ * The union of datasets of the same structure, keeping the first data point of each identifier values. Without
+ * identifiers, the union keeps the distinct data points, compared on all their values.
+ * <p>
+ * The data points are streamed in the order of the datasets. The identifier values of each data point are
+ * hashed once, from the positions of the identifiers in its structure, and looked up in an open addressing
+ * set of the identifier values already seen. Only the identifier values are kept in memory, not the data points.
+ */
+final class UnionExpression extends DatasetExpression {
+
+    private final List<DatasetExpression> datasets;
+    private final DataStructure structure;
+
+    UnionExpression(List<DatasetExpression> datasets) {
+        this.datasets = List.copyOf(datasets);
+        this.structure = datasets.get(0).getDataStructure();
+    }
+
+    @Override
+    public Dataset resolve(Map<String, Object> context) {
+        List<Dataset> resolved = new ArrayList<>(datasets.size());
+        for (DatasetExpression dataset : datasets) {
+            resolved.add(dataset.resolve(context));
+        }
+        var identifiers = new ArrayList<String>();
+        for (Dataset.Component component : structure.values()) {
+            if (component.isIdentifier()) {
+                identifiers.add(component.getName());
+            }
+        }
+        if (identifiers.isEmpty()) {
+            identifiers.addAll(structure.keySet());
+        }
+        return new StreamDataset(structure, () -> {
+            var seen = new IdentifierSet(identifiers.size());
+            return resolved.stream().flatMap(dataset -> firstSeen(dataset, identifiers, seen));
+        });
+    }
+
+    private Stream<DataPoint> firstSeen(Dataset dataset, List<String> identifiers, IdentifierSet seen) {
+        var datasetStructure = dataset.getDataStructure();
+        var slots = new int[identifiers.size()];
+        for (int k = 0; k < slots.length; k++) {
+            slots[k] = datasetStructure.indexOfKey(identifiers.get(k));
+        }
+        var stream = dataset.stream().filter(dataPoint -> seen.add(dataPoint, slots));
+        if (new ArrayList<>(datasetStructure.keySet()).equals(new ArrayList<>(structure.keySet()))) {
+            return stream;
+        }
+        // The structures have the same components in another order.
+        return stream.map(dataPoint -> {
+            var reordered = new DataPoint(structure);
+            for (String name : structure.keySet()) {
+                reordered.set(name, dataPoint.get(name));
+            }
+            return reordered;
+        });
+    }
+
+    @Override
+    public DataStructure getDataStructure() {
+        return structure;
+    }
+
+    /**
+     * The identifier values seen, with linear probing on the hash of the values.
+     */
+    private static final class IdentifierSet {
+
+        private final int width;
+        private final List<Object[]> keys = new ArrayList<>();
+        private int[] hashes = new int[16];
+        private int[] slots = new int[32];
+
+        private IdentifierSet(int width) {
+            this.width = width;
+        }
+
+        /**
+         * Adds the identifier values of a data point, read at the given positions.
+         *
+         * @return True if the values were not in the set.
+         */
+        private boolean add(DataPoint dataPoint, int[] positions) {
+            int hash = 1;
+            for (int position : positions) {
+                hash = 31 * hash + Objects.hashCode(dataPoint.get(position));
+            }
+            int mask = slots.length - 1;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (slots[slot] != 0) {
+                int key = slots[slot] - 1;
+                if (hashes[key] == hash && matches(dataPoint, positions, keys.get(key))) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            var values = new Object[width];
+            for (int k = 0; k < width; k++) {
+                values[k] = dataPoint.get(positions[k]);
+            }
+            int key = keys.size();
+            keys.add(values);
+            if (key == hashes.length) {
+                hashes = Arrays.copyOf(hashes, key * 2);
+            }
+            hashes[key] = hash;
+            slots[slot] = key + 1;
+            if (keys.size() * 2 > slots.length) {
+                rehash();
+            }
+            return true;
+        }
+
+        private static boolean matches(DataPoint dataPoint, int[] positions, Object[] values) {
+            for (int k = 0; k < values.length; k++) {
+                if (!Objects.equals(dataPoint.get(positions[k]), values[k])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int mask = slots.length - 1;
+            for (int key = 0; key < keys.size(); key++) {
+                int slot = (hashes[key] ^ (hashes[key] >>> 16)) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = key + 1;
+            }
+        }
+    }
+}
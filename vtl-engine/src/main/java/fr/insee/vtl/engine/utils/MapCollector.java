@@ -84,7 +84,9 @@ public class MapCollector implements Collector<Structured.DataPoint, Structured.
 
     @Override
     public Set<Characteristics> characteristics() {
-        // TODO: Think about this.
+        // The aggregations do not depend on the order of the data points. The containers are data points that
+        // are not thread safe, so the collector is not concurrent: each thread accumulates its own container and
+        // the containers are merged with the combiner. The finisher transforms the values of the containers.
         return Set.of(Characteristics.UNORDERED);
     }
 }
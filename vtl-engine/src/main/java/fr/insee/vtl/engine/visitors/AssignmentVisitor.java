@@ -1,34 +1,97 @@
 package fr.insee.vtl.engine.visitors;
 
+import fr.insee.vtl.engine.visitors.expression.CommonSubexpressions;
 import fr.insee.vtl.engine.visitors.expression.ExpressionVisitor;
+import fr.insee.vtl.model.DatasetExpression;
 import fr.insee.vtl.model.ProcessingEngine;
 import fr.insee.vtl.model.ResolvableExpression;
+import fr.insee.vtl.model.StreamDataset;
 import fr.insee.vtl.parser.VtlBaseVisitor;
 import fr.insee.vtl.parser.VtlParser;
 
 import javax.script.Bindings;
 import javax.script.ScriptContext;
 import java.util.Objects;
+import java.util.Set;
 
 public class AssignmentVisitor extends VtlBaseVisitor<Object> {
 
     private final ScriptContext context;
     private final ExpressionVisitor expressionVisitor;
+    private final Set<VtlParser.StatementContext> inlined;
 
     public AssignmentVisitor(ScriptContext context, ProcessingEngine processingEngine) {
+        this(context, processingEngine, null);
+    }
+
+    /**
+     * Constructor for the lazy mode, where the assigned datasets are resolved the first time they are read.
+     *
+     * @param context          The scripting context.
+     * @param processingEngine The processing engine.
+     * @param inlined          The statements whose dataset is read by at most one other statement, which can
+     *                         build on its expression, or null to resolve the datasets when they are assigned.
+     */
+    public AssignmentVisitor(ScriptContext context, ProcessingEngine processingEngine,
+                             Set<VtlParser.StatementContext> inlined) {
+        this(context, processingEngine, inlined, null);
+    }
+
+    /**
+     * Constructor sharing the dataset expressions written several times in the script.
+     *
+     * @param context              The scripting context.
+     * @param processingEngine     The processing engine.
+     * @param inlined              The statements whose dataset is read by at most one other statement, or null
+     *                             to resolve the datasets when they are assigned.
+     * @param commonSubexpressions The dataset expressions shared between the statements, or null.
+     */
+    public AssignmentVisitor(ScriptContext context, ProcessingEngine processingEngine,
+                             Set<VtlParser.StatementContext> inlined,
+                             CommonSubexpressions commonSubexpressions) {
+        this(context, processingEngine, inlined, commonSubexpressions, false);
+    }
+
+    /**
+     * Constructor choosing how to compute the medians of the aggregations.
+     *
+     * @param context              The scripting context.
+     * @param processingEngine     The processing engine.
+     * @param inlined              The statements whose dataset is read by at most one other statement, or null
+     *                             to resolve the datasets when they are assigned.
+     * @param commonSubexpressions The dataset expressions shared between the statements, or null.
+     * @param exactMedian          True to compute exact medians, false to estimate the medians of large groups.
+     */
+    public AssignmentVisitor(ScriptContext context, ProcessingEngine processingEngine,
+                             Set<VtlParser.StatementContext> inlined,
+                             CommonSubexpressions commonSubexpressions, boolean exactMedian) {
         this.context = Objects.requireNonNull(context);
         expressionVisitor = new ExpressionVisitor(
                 context.getBindings(ScriptContext.ENGINE_SCOPE),
-                processingEngine
+                processingEngine,
+                commonSubexpressions,
+                exactMedian
         );
+        this.inlined = inlined;
     }
 
     @Override
     public Object visitTemporaryAssignment(VtlParser.TemporaryAssignmentContext ctx) {
         ResolvableExpression resolvableExpression = expressionVisitor.visit(ctx.expr());
         Bindings bindings = context.getBindings(ScriptContext.ENGINE_SCOPE);
-        Object assignedObject = resolvableExpression.resolve(bindings);
         String variableIdentifier = ctx.varID().getText();
+        if (inlined != null && resolvableExpression instanceof DatasetExpression) {
+            var deferredDataset = new DeferredDataset((DatasetExpression) resolvableExpression, bindings,
+                    inlined.contains(ctx));
+            bindings.put(variableIdentifier, deferredDataset);
+            return deferredDataset;
+        }
+        Object assignedObject = resolvableExpression.resolve(bindings);
+        if (assignedObject instanceof StreamDataset) {
+            // Compute the data points once so that the statements reading the variable
+            // do not pull them through the whole pipeline again.
+            ((StreamDataset) assignedObject).getDataPoints();
+        }
         bindings.put(variableIdentifier, assignedObject);
         return assignedObject;
     }
@@ -11,18 +11,36 @@ import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import static fr.insee.vtl.engine.utils.TypeChecking.assertNumber;
+
 public class ClauseVisitor extends VtlBaseVisitor<DatasetExpression> {
 
+    private static final VariablesVisitor VARIABLES_VISITOR = new VariablesVisitor();
+
     private final DatasetExpression datasetExpression;
     private final ExpressionVisitor componentExpressionVisitor;
 
     private final ProcessingEngine processingEngine;
+    private final boolean exactMedian;
 
     public ClauseVisitor(DatasetExpression datasetExpression, ProcessingEngine processingEngine) {
+        this(datasetExpression, processingEngine, false);
+    }
+
+    /**
+     * Constructor taking the dataset the clauses apply to and how to compute medians.
+     *
+     * @param datasetExpression The dataset the clauses apply to.
+     * @param processingEngine  The processing engine.
+     * @param exactMedian       True to compute exact medians, false to estimate the medians of large groups.
+     */
+    public ClauseVisitor(DatasetExpression datasetExpression, ProcessingEngine processingEngine, boolean exactMedian) {
+        this.exactMedian = exactMedian;
         this.datasetExpression = Objects.requireNonNull(datasetExpression);
-        // Here we "switch" to the dataset context.
-        Map<String, Object> componentMap = datasetExpression.getDataStructure().values().stream()
-                .collect(Collectors.toMap(Dataset.Component::getName, component -> component));
+        // Here we "switch" to the dataset context. The structure itself is used so that
+        // component references can be resolved by position.
+        @SuppressWarnings("unchecked")
+        Map<String, Object> componentMap = (Map<String, Object>) (Map<String, ?>) datasetExpression.getDataStructure();
         this.componentExpressionVisitor = new ExpressionVisitor(componentMap, processingEngine);
         this.processingEngine = Objects.requireNonNull(processingEngine);
     }
@@ -71,7 +89,10 @@ public class ClauseVisitor extends VtlBaseVisitor<DatasetExpression> {
     @Override
     public DatasetExpression visitFilterClause(VtlParser.FilterClauseContext ctx) {
         ResolvableExpression filter = componentExpressionVisitor.visit(ctx.expr());
-        return processingEngine.executeFilter(datasetExpression, filter);
+        // The components read by the filter let the processing engine apply it before the previous operations.
+        var components = VARIABLES_VISITOR.visit(ctx.expr());
+        components.retainAll(datasetExpression.getDataStructure().keySet());
+        return processingEngine.executeFilter(datasetExpression, filter, components);
     }
 
     @Override
@@ -95,11 +116,15 @@ public class ClauseVisitor extends VtlBaseVisitor<DatasetExpression> {
         }
 
         // Create a keyExtractor with the columns we group by.
-        // TODO: Extract.
-        Set<String> finalGroupBy = groupBy;
+        List<String> groupByNames = datasetExpression.getDataStructure().keySet().stream()
+                .filter(groupBy::contains)
+                .collect(Collectors.toList());
         Function<Structured.DataPoint, Map<String, Object>> keyExtractor = dataPoint -> {
-            return new Structured.DataPointMap(dataPoint).entrySet().stream().filter(entry -> finalGroupBy.contains(entry.getKey()))
-                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+            Map<String, Object> key = new HashMap<>();
+            for (String name : groupByNames) {
+                key.put(name, dataPoint.get(name));
+            }
+            return key;
         };
 
         // Create a map of collectors.
@@ -115,19 +140,24 @@ public class ClauseVisitor extends VtlBaseVisitor<DatasetExpression> {
             } else if (groupFunctionCtx.COUNT() != null) {
                 collectorMap.put(name, AggregationExpression.count());
             } else if (groupFunctionCtx.MAX() != null) {
-                throw new VtlRuntimeException(new VtlScriptException("not implemented", groupFunctionCtx));
+                collectorMap.put(name, AggregationExpression.max(expression));
             } else if (groupFunctionCtx.MIN() != null) {
-                throw new VtlRuntimeException(new VtlScriptException("not implemented", groupFunctionCtx));
+                collectorMap.put(name, AggregationExpression.min(expression));
             } else if (groupFunctionCtx.MEDIAN() != null) {
-                throw new VtlRuntimeException(new VtlScriptException("not implemented", groupFunctionCtx));
+                collectorMap.put(name, AggregationExpression.median(
+                        assertNumber(expression, groupFunctionCtx.expr()), exactMedian));
             } else if (groupFunctionCtx.STDDEV_POP() != null) {
-                throw new VtlRuntimeException(new VtlScriptException("not implemented", groupFunctionCtx));
+                collectorMap.put(name, AggregationExpression.stddevPop(
+                        assertNumber(expression, groupFunctionCtx.expr())));
             } else if (groupFunctionCtx.STDDEV_SAMP() != null) {
-                throw new VtlRuntimeException(new VtlScriptException("not implemented", groupFunctionCtx));
+                collectorMap.put(name, AggregationExpression.stddevSamp(
+                        assertNumber(expression, groupFunctionCtx.expr())));
             } else if (groupFunctionCtx.VAR_POP() != null) {
-                throw new VtlRuntimeException(new VtlScriptException("not implemented", groupFunctionCtx));
+                collectorMap.put(name, AggregationExpression.varPop(
+                        assertNumber(expression, groupFunctionCtx.expr())));
             } else if (groupFunctionCtx.VAR_SAMP() != null) {
-                throw new VtlRuntimeException(new VtlScriptException("not implemented", groupFunctionCtx));
+                collectorMap.put(name, AggregationExpression.varSamp(
+                        assertNumber(expression, groupFunctionCtx.expr())));
             } else {
                 throw new VtlRuntimeException(new VtlScriptException("not implemented", groupFunctionCtx));
             }
@@ -152,5 +182,4 @@ public class ClauseVisitor extends VtlBaseVisitor<DatasetExpression> {
 
         return processingEngine.executeAggr(datasetExpression, structure, collectorMap, keyExtractor);
     }
-
 }
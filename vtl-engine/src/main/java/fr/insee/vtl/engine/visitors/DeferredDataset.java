@@ -0,0 +1,94 @@
+package fr.insee.vtl.engine.visitors;
+
+import fr.insee.vtl.model.Dataset;
+import fr.insee.vtl.model.DatasetExpression;
+import fr.insee.vtl.model.StreamDataset;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * A dataset assigned in lazy mode, resolved from its expression the first time its data is read.
+ * <p>
+ * The resolved dataset is kept, so the expression is resolved at most once by the deferred dataset. The structure
+ * is known without resolving the expression. A deferred dataset can also hand its expression over once, so that
+ * the only statement reading it builds on the expression instead of reading the resolved dataset. The expression
+ * is then resolved as part of that statement, and again if the dataset itself is read afterwards.
+ */
+public class DeferredDataset implements Dataset {
+
+    private final DatasetExpression expression;
+    private final Map<String, Object> context;
+    private volatile boolean inlined;
+    private volatile Dataset dataset;
+
+    /**
+     * Constructor taking the expression of the dataset.
+     *
+     * @param expression The expression of the dataset.
+     * @param context    The context to resolve the expression in.
+     * @param inlined    true if the expression can be handed over by {@link #getExpression()}.
+     */
+    public DeferredDataset(DatasetExpression expression, Map<String, Object> context, boolean inlined) {
+        this.expression = Objects.requireNonNull(expression);
+        this.context = Objects.requireNonNull(context);
+        this.inlined = inlined;
+    }
+
+    /**
+     * Returns an expression reading the dataset.
+     * <p>
+     * The first call returns the expression of the dataset if it can be inlined and was not resolved yet. The
+     * other calls return an expression reading the resolved dataset.
+     *
+     * @return An expression reading the dataset.
+     */
+    public synchronized DatasetExpression getExpression() {
+        if (inlined && dataset == null) {
+            inlined = false;
+            return expression;
+        }
+        return DatasetExpression.of(resolve());
+    }
+
+    private Dataset resolve() {
+        var result = dataset;
+        if (result == null) {
+            synchronized (this) {
+                result = dataset;
+                if (result == null) {
+                    result = expression.resolve(context);
+                    if (result instanceof StreamDataset) {
+                        // Compute the data points once so that the statements reading the variable
+                        // do not pull them through the whole pipeline again.
+                        ((StreamDataset) result).getDataPoints();
+                    }
+                    dataset = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<DataPoint> getDataPoints() {
+        return resolve().getDataPoints();
+    }
+
+    @Override
+    public Stream<DataPoint> stream() {
+        return resolve().stream();
+    }
+
+    @Override
+    public List<String> getSortOrder() {
+        return resolve().getSortOrder();
+    }
+
+    @Override
+    public DataStructure getDataStructure() {
+        return expression.getDataStructure();
+    }
+}
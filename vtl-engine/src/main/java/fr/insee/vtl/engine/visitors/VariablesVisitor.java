@@ -0,0 +1,34 @@
+package fr.insee.vtl.engine.visitors;
+
+import fr.insee.vtl.parser.VtlBaseVisitor;
+import fr.insee.vtl.parser.VtlParser;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * <code>VariablesVisitor</code> collects the names of the variables an expression reads.
+ * <p>
+ * The names of the components used inside the clauses are collected as well, so the result may contain names
+ * that are not variables.
+ */
+public class VariablesVisitor extends VtlBaseVisitor<Set<String>> {
+
+    @Override
+    public Set<String> visitVarIdExpr(VtlParser.VarIdExprContext ctx) {
+        var names = defaultResult();
+        names.add(ctx.getText());
+        return names;
+    }
+
+    @Override
+    protected Set<String> defaultResult() {
+        return new HashSet<>();
+    }
+
+    @Override
+    protected Set<String> aggregateResult(Set<String> aggregate, Set<String> nextResult) {
+        aggregate.addAll(nextResult);
+        return aggregate;
+    }
+}
@@ -1,10 +1,8 @@
 package fr.insee.vtl.engine.visitors.expression;
 
 import fr.insee.vtl.engine.utils.TypeChecking;
-import fr.insee.vtl.model.DoubleExpression;
-import fr.insee.vtl.model.LongExpression;
+import fr.insee.vtl.model.ArithmeticExpression;
 import fr.insee.vtl.model.ResolvableExpression;
-import fr.insee.vtl.model.StringExpression;
 import fr.insee.vtl.parser.VtlBaseVisitor;
 import fr.insee.vtl.parser.VtlParser;
 
@@ -51,51 +49,19 @@ public class ArithmeticExprOrConcatVisitor extends VtlBaseVisitor<ResolvableExpr
     private ResolvableExpression handlePlus(VtlParser.ExprContext left, VtlParser.ExprContext right) {
         var leftExpression = assertNumber(exprVisitor.visit(left), left);
         var rightExpression = assertNumber(exprVisitor.visit(right), right);
-        if (isLong(leftExpression) && isLong(rightExpression)) {
-            return LongExpression.of(context -> {
-                Long leftValue = (Long) leftExpression.resolve(context);
-                Long rightValue = (Long) rightExpression.resolve(context);
-                if (TypeChecking.hasNullArgs(leftValue, rightValue)) return null;
-                return leftValue + rightValue;
-            });
-        }
-        return DoubleExpression.of(context -> {
-            var leftValue = leftExpression.resolve(context);
-            var rightValue = rightExpression.resolve(context);
-            if (TypeChecking.hasNullArgs(leftValue, rightValue)) return null;
-            var leftDouble = leftValue instanceof Long ? ((Long) leftValue).doubleValue() : (Double) leftValue;
-            var rightDouble = rightValue instanceof Long ? ((Long) rightValue).doubleValue() : (Double) rightValue;
-            return leftDouble + rightDouble;
-        });
+        return new ArithmeticExpression(ArithmeticExpression.Operator.PLUS, leftExpression, rightExpression);
     }
 
     private ResolvableExpression handleMinus(VtlParser.ExprContext left, VtlParser.ExprContext right) {
         var leftExpression = assertNumber(exprVisitor.visit(left), left);
         var rightExpression = assertNumber(exprVisitor.visit(right), right);
-        if (isLong(leftExpression) && isLong(rightExpression)) {
-            return LongExpression.of(context -> {
-                Long leftValue = (Long) leftExpression.resolve(context);
-                Long rightValue = (Long) rightExpression.resolve(context);
-                if (TypeChecking.hasNullArgs(leftValue, rightValue)) return null;
-                return leftValue - rightValue;
-            });
-        }
-        return DoubleExpression.of(context -> {
-            var leftValue = leftExpression.resolve(context);
-            var rightValue = rightExpression.resolve(context);
-            if (TypeChecking.hasNullArgs(leftValue, rightValue)) return null;
-            var leftDouble = leftValue instanceof Long ? ((Long) leftValue).doubleValue() : (Double) leftValue;
-            var rightDouble = rightValue instanceof Long ? ((Long) rightValue).doubleValue() : (Double) rightValue;
-            return leftDouble - rightDouble;
-        });
+        return new ArithmeticExpression(ArithmeticExpression.Operator.MINUS, leftExpression, rightExpression);
     }
 
     private ResolvableExpression handleConcat(VtlParser.ExprContext left, VtlParser.ExprContext right) {
         var leftExpression = assertString(exprVisitor.visit(left), left);
         var rightExpression = assertString(exprVisitor.visit(right), right);
-        return StringExpression.of(context -> {
-            String leftValue = (String) leftExpression.resolve(context);
-            String rightValue = (String) rightExpression.resolve(context);
+        return ResolvableExpression.withType(String.class, leftExpression, rightExpression, (String leftValue, String rightValue) -> {
             if (TypeChecking.hasNullArgs(leftValue, rightValue)) return null;
             return leftValue.concat(rightValue);
         });
@@ -1,8 +1,6 @@
 package fr.insee.vtl.engine.visitors.expression;
 
-import fr.insee.vtl.engine.utils.TypeChecking;
-import fr.insee.vtl.model.DoubleExpression;
-import fr.insee.vtl.model.LongExpression;
+import fr.insee.vtl.model.ArithmeticExpression;
 import fr.insee.vtl.model.ResolvableExpression;
 import fr.insee.vtl.parser.VtlBaseVisitor;
 import fr.insee.vtl.parser.VtlParser;
@@ -10,7 +8,6 @@ import fr.insee.vtl.parser.VtlParser;
 import java.util.Objects;
 
 import static fr.insee.vtl.engine.utils.TypeChecking.assertNumber;
-import static fr.insee.vtl.engine.utils.TypeChecking.isLong;
 
 /**
  * <code>ArithmeticVisitor</code> is the base visitor for multiplication or division expressions.
@@ -53,34 +50,12 @@ public class ArithmeticVisitor extends VtlBaseVisitor<ResolvableExpression> {
     private ResolvableExpression handleMultiplication(VtlParser.ExprContext left, VtlParser.ExprContext right) {
         var leftExpression = assertNumber(exprVisitor.visit(left), left);
         var rightExpression = assertNumber(exprVisitor.visit(right), right);
-        if (isLong(leftExpression) && isLong(rightExpression)) {
-            return LongExpression.of(context -> {
-                Long leftValue = (Long) leftExpression.resolve(context);
-                Long rightValue = (Long) rightExpression.resolve(context);
-                if (TypeChecking.hasNullArgs(leftValue, rightValue)) return null;
-                return leftValue * rightValue;
-            });
-        }
-        return DoubleExpression.of(context -> {
-            var leftValue = leftExpression.resolve(context);
-            var rightValue = rightExpression.resolve(context);
-            if (TypeChecking.hasNullArgs(leftValue, rightValue)) return null;
-            var leftDouble = leftValue instanceof Long ? ((Long) leftValue).doubleValue() : (Double) leftValue;
-            var rightDouble = rightValue instanceof Long ? ((Long) rightValue).doubleValue() : (Double) rightValue;
-            return leftDouble * rightDouble;
-        });
+        return new ArithmeticExpression(ArithmeticExpression.Operator.MULTIPLY, leftExpression, rightExpression);
     }
 
     private ResolvableExpression handleDivision(VtlParser.ExprContext left, VtlParser.ExprContext right) {
         var leftExpression = assertNumber(exprVisitor.visit(left), left);
         var rightExpression = assertNumber(exprVisitor.visit(right), right);
-        return DoubleExpression.of(context -> {
-            var leftValue = leftExpression.resolve(context);
-            var rightValue = rightExpression.resolve(context);
-            if (TypeChecking.hasNullArgs(leftValue, rightValue)) return null;
-            var leftDouble = leftValue instanceof Long ? ((Long) leftValue).doubleValue() : (Double) leftValue;
-            var rightDouble = rightValue instanceof Long ? ((Long) rightValue).doubleValue() : (Double) rightValue;
-            return leftDouble / rightDouble;
-        });
+        return new ArithmeticExpression(ArithmeticExpression.Operator.DIVIDE, leftExpression, rightExpression);
     }
 }
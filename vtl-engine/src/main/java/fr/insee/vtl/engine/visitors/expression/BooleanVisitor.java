@@ -1,7 +1,6 @@
 package fr.insee.vtl.engine.visitors.expression;
 
-import fr.insee.vtl.engine.utils.TypeChecking;
-import fr.insee.vtl.model.BooleanExpression;
+import fr.insee.vtl.model.LogicalExpression;
 import fr.insee.vtl.model.ResolvableExpression;
 import fr.insee.vtl.parser.VtlBaseVisitor;
 import fr.insee.vtl.parser.VtlParser;
@@ -26,10 +25,6 @@ public class BooleanVisitor extends VtlBaseVisitor<ResolvableExpression> {
         exprVisitor = Objects.requireNonNull(expressionVisitor);
     }
 
-    private static boolean nullFalse(Boolean b) {
-        return b != null ? b : false;
-    }
-
     /**
      * Visits expressions with boolean operators.
      *
@@ -53,52 +48,18 @@ public class BooleanVisitor extends VtlBaseVisitor<ResolvableExpression> {
     private ResolvableExpression handleAnd(VtlParser.ExprContext left, VtlParser.ExprContext right) {
         var leftExpression = assertBoolean(exprVisitor.visit(left), left);
         var rightExpression = assertBoolean(exprVisitor.visit(right), right);
-        return BooleanExpression.of(context -> {
-
-            var leftValue = (Boolean) leftExpression.resolve(context);
-            if (leftValue != null && !leftValue) return false;
-
-            var rightValue = (Boolean) rightExpression.resolve(context);
-            if (rightValue != null && !rightValue) return false;
-
-            if (TypeChecking.hasNullArgs(rightValue, leftValue)) return null;
-
-            return true;
-        });
+        return new LogicalExpression(LogicalExpression.Operator.AND, leftExpression, rightExpression);
     }
 
     private ResolvableExpression handleOr(VtlParser.ExprContext left, VtlParser.ExprContext right) {
         var leftExpression = assertBoolean(exprVisitor.visit(left), left);
         var rightExpression = assertBoolean(exprVisitor.visit(right), right);
-        return BooleanExpression.of(context -> {
-            var leftValue = (Boolean) leftExpression.resolve(context);
-            if (leftValue != null && leftValue) {
-                return true;
-            }
-            var rightValue = (Boolean) rightExpression.resolve(context);
-            if (rightValue != null && rightValue) {
-                return true;
-            }
-            if (TypeChecking.hasNullArgs(rightValue, leftValue)) {
-                return null;
-            }
-            return false;
-        });
+        return new LogicalExpression(LogicalExpression.Operator.OR, leftExpression, rightExpression);
     }
 
     private ResolvableExpression handleXor(VtlParser.ExprContext left, VtlParser.ExprContext right) {
         var leftExpression = assertBoolean(exprVisitor.visit(left), left);
         var rightExpression = assertBoolean(exprVisitor.visit(right), right);
-        return BooleanExpression.of(context -> {
-            var leftValue = (Boolean) leftExpression.resolve(context);
-            if (leftValue == null) {
-                return null;
-            }
-            var rightValue = (Boolean) rightExpression.resolve(context);
-            if (rightValue == null) {
-                return null;
-            }
-            return nullFalse(leftValue) ^ nullFalse(rightValue);
-        });
+        return new LogicalExpression(LogicalExpression.Operator.XOR, leftExpression, rightExpression);
     }
 }
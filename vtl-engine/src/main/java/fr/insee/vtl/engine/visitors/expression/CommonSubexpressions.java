@@ -0,0 +1,189 @@
+package fr.insee.vtl.engine.visitors.expression;
+
+import fr.insee.vtl.engine.visitors.VariablesVisitor;
+import fr.insee.vtl.model.Dataset;
+import fr.insee.vtl.model.DatasetExpression;
+import fr.insee.vtl.model.ResolvableExpression;
+import fr.insee.vtl.model.StreamDataset;
+import fr.insee.vtl.parser.VtlParser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * <code>CommonSubexpressions</code> shares the dataset expressions written several times in a script, so that
+ * each of them is resolved once per evaluation of the script.
+ * <p>
+ * Two occurrences are the same expression if they have the same tokens and if the variables they read are bound
+ * to the same values when they are visited. Only the clause, join and set expressions are shared. The expressions
+ * written once in the script are not shared, so that the processing engine can still chain them with the
+ * following operations.
+ * <p>
+ * An instance is meant for one evaluation of a script.
+ */
+public final class CommonSubexpressions {
+
+    private static final VariablesVisitor VARIABLES_VISITOR = new VariablesVisitor();
+
+    private final Set<String> repeated;
+    private final Map<Key, SharedDatasetExpression> expressions = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor taking the statements of the script.
+     *
+     * @param statements The statements of the script.
+     */
+    public CommonSubexpressions(List<? extends ParseTree> statements) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (ParseTree statement : statements) {
+            count(statement, counts);
+        }
+        repeated = counts.entrySet().stream()
+                .filter(entry -> entry.getValue() > 1)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+    private static void count(ParseTree tree, Map<String, Integer> counts) {
+        if (isShareable(tree)) {
+            counts.merge(tokens(tree), 1, Integer::sum);
+        }
+        for (int i = 0; i < tree.getChildCount(); i++) {
+            count(tree.getChild(i), counts);
+        }
+    }
+
+    private static boolean isShareable(ParseTree tree) {
+        return tree instanceof VtlParser.ClauseExprContext
+                || tree instanceof VtlParser.JoinFunctionsContext
+                || tree instanceof VtlParser.SetFunctionsContext;
+    }
+
+    private static String tokens(ParseTree tree) {
+        var builder = new StringBuilder();
+        appendTokens(tree, builder);
+        return builder.toString();
+    }
+
+    private static void appendTokens(ParseTree tree, StringBuilder builder) {
+        if (tree instanceof TerminalNode) {
+            // Separate the tokens so that "a and b" and "aandb" do not match.
+            builder.append(tree.getText()).append(' ');
+        }
+        for (int i = 0; i < tree.getChildCount(); i++) {
+            appendTokens(tree.getChild(i), builder);
+        }
+    }
+
+    /**
+     * Returns the shared expression of a subtree, visiting the subtree if it was not visited yet.
+     *
+     * @param ctx     The subtree.
+     * @param context The bindings the variables of the subtree are read from.
+     * @param visit   The visit of the subtree.
+     * @return The shared expression of the subtree, or the result of the visit if it is not shared.
+     */
+    ResolvableExpression share(ParserRuleContext ctx, Map<String, Object> context,
+                               Supplier<ResolvableExpression> visit) {
+        if (!isShareable(ctx)) {
+            return visit.get();
+        }
+        var tokens = tokens(ctx);
+        if (!repeated.contains(tokens)) {
+            return visit.get();
+        }
+        var values = new TreeSet<>(VARIABLES_VISITOR.visit(ctx)).stream()
+                .map(context::get)
+                .toArray();
+        var key = new Key(tokens, values);
+        var shared = expressions.get(key);
+        if (shared != null) {
+            return shared;
+        }
+        var expression = visit.get();
+        if (!(expression instanceof DatasetExpression)) {
+            return expression;
+        }
+        shared = expressions.putIfAbsent(key, new SharedDatasetExpression((DatasetExpression) expression));
+        return shared != null ? shared : expressions.get(key);
+    }
+
+    private static final class Key {
+
+        private final String tokens;
+        private final Object[] values;
+
+        private Key(String tokens, Object[] values) {
+            this.tokens = tokens;
+            this.values = values;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            var key = (Key) o;
+            if (!tokens.equals(key.tokens) || values.length != key.values.length) {
+                return false;
+            }
+            // The bindings are compared by identity: datasets do not implement equals.
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != key.values[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = tokens.hashCode();
+            for (Object value : values) {
+                hash = 31 * hash + System.identityHashCode(value);
+            }
+            return hash;
+        }
+    }
+
+    /**
+     * A dataset expression resolved once, whose result is kept for the other occurrences.
+     */
+    private static final class SharedDatasetExpression extends DatasetExpression {
+
+        private final DatasetExpression expression;
+        private volatile Dataset dataset;
+
+        private SharedDatasetExpression(DatasetExpression expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        public Dataset resolve(Map<String, Object> context) {
+            var result = dataset;
+            if (result == null) {
+                synchronized (this) {
+                    result = dataset;
+                    if (result == null) {
+                        result = expression.resolve(context);
+                        if (result instanceof StreamDataset) {
+                            // Compute the data points once for all the occurrences.
+                            ((StreamDataset) result).getDataPoints();
+                        }
+                        dataset = result;
+                    }
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public DataStructure getDataStructure() {
+            return expression.getDataStructure();
+        }
+    }
+}
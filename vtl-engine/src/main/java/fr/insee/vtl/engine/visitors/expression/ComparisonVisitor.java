@@ -4,6 +4,7 @@ import fr.insee.vtl.engine.exceptions.ConflictingTypesException;
 import fr.insee.vtl.engine.exceptions.InvalidTypeException;
 import fr.insee.vtl.engine.exceptions.VtlRuntimeException;
 import fr.insee.vtl.model.BooleanExpression;
+import fr.insee.vtl.model.ComparisonExpression;
 import fr.insee.vtl.model.ListExpression;
 import fr.insee.vtl.model.ResolvableExpression;
 import fr.insee.vtl.model.TypedExpression;
@@ -19,7 +20,6 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 import static fr.insee.vtl.engine.utils.TypeChecking.assertTypeExpression;
-import static fr.insee.vtl.engine.utils.TypeChecking.hasNullArgs;
 
 /**
  * <code>ComparisonVisitor</code> is the base visitor for comparison, 'element of' and list expressions.
@@ -37,31 +37,6 @@ public class ComparisonVisitor extends VtlBaseVisitor<ResolvableExpression> {
         exprVisitor = Objects.requireNonNull(expressionVisitor);
     }
 
-    private static <T extends Comparable<T>> boolean isEqual(T left, T right) {
-        return left.compareTo(right) == 0;
-    }
-
-    private static <T extends Comparable<T>> boolean isNotEqual(T left, T right) {
-        return !isEqual(left, right);
-    }
-
-    private static <T extends Comparable<T>> boolean isLessThan(T left, T right) {
-        return left.compareTo(right) < 0;
-    }
-
-    private static <T extends Comparable<T>> boolean isGreaterThan(T left, T right) {
-        return left.compareTo(right) > 0;
-    }
-
-    private static <T extends Comparable<T>> boolean isLessThanOrEqual(T left, T right) {
-        return !isGreaterThan(left, right);
-    }
-
-    private static <T extends Comparable<T>> boolean isGreaterThanOrEqual(T left, T right) {
-        return !isLessThan(left, right);
-    }
-
-
     /**
      * Visits expressions with comparisons.
      *
@@ -88,48 +63,17 @@ public class ComparisonVisitor extends VtlBaseVisitor<ResolvableExpression> {
         if (Comparable.class.isAssignableFrom(leftExpression.getType())) {
             switch (type.getType()) {
                 case VtlParser.EQ:
-                    return BooleanExpression.of(context -> {
-                        // TODO: factorize null handling in equal function
-                        Comparable leftValue = (Comparable) leftExpression.resolve(context);
-                        Comparable rightValue = (Comparable) rightExpression.resolve(context);
-                        if (hasNullArgs(leftValue, rightValue)) return null;
-                        return isEqual(leftValue, rightValue);
-                    });
+                    return new ComparisonExpression(ComparisonExpression.Operator.EQUAL, leftExpression, rightExpression);
                 case VtlParser.NEQ:
-                    return BooleanExpression.of(context -> {
-                        Comparable leftValue = (Comparable) leftExpression.resolve(context);
-                        Comparable rightValue = (Comparable) rightExpression.resolve(context);
-                        if (hasNullArgs(leftValue, rightValue)) return null;
-                        return isNotEqual(leftValue, rightValue);
-                    });
+                    return new ComparisonExpression(ComparisonExpression.Operator.NOT_EQUAL, leftExpression, rightExpression);
                 case VtlParser.LT:
-                    return BooleanExpression.of(context -> {
-                        Comparable leftValue = (Comparable) leftExpression.resolve(context);
-                        Comparable rightValue = (Comparable) rightExpression.resolve(context);
-                        if (hasNullArgs(leftValue, rightValue)) return null;
-                        return isLessThan(leftValue, rightValue);
-                    });
+                    return new ComparisonExpression(ComparisonExpression.Operator.LESS_THAN, leftExpression, rightExpression);
                 case VtlParser.MT:
-                    return BooleanExpression.of(context -> {
-                        Comparable leftValue = (Comparable) leftExpression.resolve(context);
-                        Comparable rightValue = (Comparable) rightExpression.resolve(context);
-                        if (hasNullArgs(leftValue, rightValue)) return null;
-                        return isGreaterThan(leftValue, rightValue);
-                    });
+                    return new ComparisonExpression(ComparisonExpression.Operator.GREATER_THAN, leftExpression, rightExpression);
                 case VtlParser.LE:
-                    return BooleanExpression.of(context -> {
-                        Comparable leftValue = (Comparable) leftExpression.resolve(context);
-                        Comparable rightValue = (Comparable) rightExpression.resolve(context);
-                        if (hasNullArgs(leftValue, rightValue)) return null;
-                        return isLessThanOrEqual(leftValue, rightValue);
-                    });
+                    return new ComparisonExpression(ComparisonExpression.Operator.LESS_THAN_OR_EQUAL, leftExpression, rightExpression);
                 case VtlParser.ME:
-                    return BooleanExpression.of(context -> {
-                        Comparable leftValue = (Comparable) leftExpression.resolve(context);
-                        Comparable rightValue = (Comparable) rightExpression.resolve(context);
-                        if (hasNullArgs(leftValue, rightValue)) return null;
-                        return isGreaterThanOrEqual(leftValue, rightValue);
-                    });
+                    return new ComparisonExpression(ComparisonExpression.Operator.GREATER_THAN_OR_EQUAL, leftExpression, rightExpression);
                 default:
                     throw new UnsupportedOperationException("unknown operator " + ctx);
             }
@@ -158,17 +102,11 @@ public class ComparisonVisitor extends VtlBaseVisitor<ResolvableExpression> {
 
         switch (ctx.op.getType()) {
             case VtlParser.IN:
-                return BooleanExpression.of(context -> {
-                    List<?> list = listExpression.resolve(context);
-                    Object value = operand.resolve(context);
-                    return list.contains(value);
-                });
+                return ResolvableExpression.withType(Boolean.class, listExpression, operand,
+                        (List<?> list, Object value) -> list.contains(value));
             case VtlParser.NOT_IN:
-                return BooleanExpression.of(context -> {
-                    List<?> list = listExpression.resolve(context);
-                    Object value = operand.resolve(context);
-                    return !list.contains(value);
-                });
+                return ResolvableExpression.withType(Boolean.class, listExpression, operand,
+                        (List<?> list, Object value) -> !list.contains(value));
             default:
                 throw new IllegalStateException("Unexpected value: " + ctx.op.getType());
         }
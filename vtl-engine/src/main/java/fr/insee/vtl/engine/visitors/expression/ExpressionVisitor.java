@@ -7,9 +7,11 @@ import fr.insee.vtl.model.ProcessingEngine;
 import fr.insee.vtl.model.ResolvableExpression;
 import fr.insee.vtl.parser.VtlBaseVisitor;
 import fr.insee.vtl.parser.VtlParser;
+import org.antlr.v4.runtime.ParserRuleContext;
 
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.Supplier;
 
 /**
  * <code>ExpressionVisitor</code> is the base visitor for expressions.
@@ -32,6 +34,9 @@ public class ExpressionVisitor extends VtlBaseVisitor<ResolvableExpression> {
     private final JoinFunctionsVisitor joinFunctionsVisitor;
     private final DistanceFunctionsVisitor distanceFunctionsVisitor;
     private final ProcessingEngine processingEngine;
+    private final Map<String, Object> context;
+    private final CommonSubexpressions commonSubexpressions;
+    private final boolean exactMedian;
 
     /**
      * Constructor taking a scripting context.
@@ -39,7 +44,36 @@ public class ExpressionVisitor extends VtlBaseVisitor<ResolvableExpression> {
      * @param context The map
      */
     public ExpressionVisitor(Map<String, Object> context, ProcessingEngine processingEngine) {
-        Objects.requireNonNull(context);
+        this(context, processingEngine, null);
+    }
+
+    /**
+     * Constructor taking a scripting context and the common subexpressions of the script.
+     *
+     * @param context              The map
+     * @param processingEngine     The processing engine.
+     * @param commonSubexpressions The dataset expressions shared between the statements, or null to visit each
+     *                             occurrence of an expression.
+     */
+    public ExpressionVisitor(Map<String, Object> context, ProcessingEngine processingEngine,
+                             CommonSubexpressions commonSubexpressions) {
+        this(context, processingEngine, commonSubexpressions, false);
+    }
+
+    /**
+     * Constructor taking a scripting context, the common subexpressions of the script and how to compute medians.
+     *
+     * @param context              The map
+     * @param processingEngine     The processing engine.
+     * @param commonSubexpressions The dataset expressions shared between the statements, or null to visit each
+     *                             occurrence of an expression.
+     * @param exactMedian          True to compute exact medians, false to estimate the medians of large groups.
+     */
+    public ExpressionVisitor(Map<String, Object> context, ProcessingEngine processingEngine,
+                             CommonSubexpressions commonSubexpressions, boolean exactMedian) {
+        this.context = Objects.requireNonNull(context);
+        this.commonSubexpressions = commonSubexpressions;
+        this.exactMedian = exactMedian;
         varIdVisitor = new VarIdVisitor(context);
         booleanVisitor = new BooleanVisitor(this);
         arithmeticVisitor = new ArithmeticVisitor(this);
@@ -212,12 +246,12 @@ public class ExpressionVisitor extends VtlBaseVisitor<ResolvableExpression> {
      */
     @Override
     public ResolvableExpression visitSetFunctions(VtlParser.SetFunctionsContext ctx) {
-        return setFunctionsVisitor.visit(ctx.setOperators());
+        return share(ctx, () -> setFunctionsVisitor.visit(ctx.setOperators()));
     }
 
     @Override
     public ResolvableExpression visitJoinFunctions(VtlParser.JoinFunctionsContext ctx) {
-        return joinFunctionsVisitor.visitJoinFunctions(ctx);
+        return share(ctx, () -> joinFunctionsVisitor.visitJoinFunctions(ctx));
     }
 
     @Override
@@ -246,8 +280,17 @@ public class ExpressionVisitor extends VtlBaseVisitor<ResolvableExpression> {
      */
     @Override
     public ResolvableExpression visitClauseExpr(VtlParser.ClauseExprContext ctx) {
-        DatasetExpression datasetExpression = (DatasetExpression) visit(ctx.dataset);
-        ClauseVisitor clauseVisitor = new ClauseVisitor(datasetExpression, processingEngine);
-        return clauseVisitor.visit(ctx.clause);
+        return share(ctx, () -> {
+            DatasetExpression datasetExpression = (DatasetExpression) visit(ctx.dataset);
+            ClauseVisitor clauseVisitor = new ClauseVisitor(datasetExpression, processingEngine, exactMedian);
+            return clauseVisitor.visit(ctx.clause);
+        });
+    }
+
+    private ResolvableExpression share(ParserRuleContext ctx, Supplier<ResolvableExpression> visit) {
+        if (commonSubexpressions == null) {
+            return visit.get();
+        }
+        return commonSubexpressions.share(ctx, context, visit);
     }
 }
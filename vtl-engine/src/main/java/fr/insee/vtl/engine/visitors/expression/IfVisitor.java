@@ -3,6 +3,7 @@ package fr.insee.vtl.engine.visitors.expression;
 import fr.insee.vtl.engine.exceptions.InvalidTypeException;
 import fr.insee.vtl.engine.exceptions.VtlRuntimeException;
 import fr.insee.vtl.model.BooleanExpression;
+import fr.insee.vtl.model.IfExpression;
 import fr.insee.vtl.model.ResolvableExpression;
 import fr.insee.vtl.parser.VtlBaseVisitor;
 import fr.insee.vtl.parser.VtlParser;
@@ -67,13 +68,6 @@ public class IfVisitor extends VtlBaseVisitor<ResolvableExpression> {
             );
         }
 
-        ResolvableExpression finalThenExpression = thenExpression;
-        ResolvableExpression finalElseExpression = elseExpression;
-        return ResolvableExpression.withTypeCasting(thenExpression.getType(), (clazz, context) -> {
-            Boolean conditionalValue = (Boolean) conditionalExpression.resolve(context);
-            return Boolean.TRUE.equals(conditionalValue) ?
-                    clazz.cast(finalThenExpression.resolve(context)) :
-                    clazz.cast(finalElseExpression.resolve(context));
-        });
+        return new IfExpression(thenExpression.getType(), conditionalExpression, thenExpression, elseExpression);
     }
 }
@@ -49,28 +49,19 @@ public class UnaryVisitor extends VtlBaseVisitor<ResolvableExpression> {
     private ResolvableExpression handleUnaryPlus(VtlParser.ExprContext exprContext) {
         ResolvableExpression expression = assertNumber(exprVisitor.visit(exprContext), exprContext);
         if (TypeChecking.isLong(expression))
-            return ResolvableExpression.withType(Long.class, context ->
-                    (Long) expression.resolve(context)
-            );
-        return ResolvableExpression.withType(Double.class, context ->
-                (Double) expression.resolve(context)
-        );
+            return ResolvableExpression.withType(Long.class, expression, (Long value) -> value);
+        return ResolvableExpression.withType(Double.class, expression, (Double value) -> value);
     }
 
     private ResolvableExpression handleUnaryMinus(VtlParser.ExprContext exprContext) {
         ResolvableExpression expression = assertNumber(exprVisitor.visit(exprContext), exprContext);
         if (TypeChecking.isLong(expression))
-            return ResolvableExpression.withType(Long.class, context ->
-                    -((Long) expression.resolve(context))
-            );
-        return ResolvableExpression.withType(Double.class, context ->
-                -((Double) expression.resolve(context))
-        );
+            return ResolvableExpression.withType(Long.class, expression, (Long value) -> -value);
+        return ResolvableExpression.withType(Double.class, expression, (Double value) -> -value);
     }
 
     private ResolvableExpression handleUnaryNot(VtlParser.ExprContext exprContext) {
         ResolvableExpression expression = assertBoolean(exprVisitor.visit(exprContext), exprContext);
-        return ResolvableExpression.withType(Boolean.class, context ->
-                !((Boolean) expression.resolve(context)));
+        return ResolvableExpression.withType(Boolean.class, expression, (Boolean value) -> !value);
     }
 }
@@ -3,6 +3,7 @@ package fr.insee.vtl.engine.visitors.expression;
 import fr.insee.vtl.engine.exceptions.UndefinedVariableException;
 import fr.insee.vtl.engine.exceptions.UnsupportedTypeException;
 import fr.insee.vtl.engine.exceptions.VtlRuntimeException;
+import fr.insee.vtl.engine.visitors.DeferredDataset;
 import fr.insee.vtl.model.*;
 import fr.insee.vtl.parser.VtlBaseVisitor;
 import fr.insee.vtl.parser.VtlParser;
@@ -44,15 +45,21 @@ public class VarIdVisitor extends VtlBaseVisitor<ResolvableExpression> implement
         }
 
         Object value = context.get(variableName);
+        if (value instanceof DeferredDataset) {
+            return ((DeferredDataset) value).getExpression();
+        }
+
         if (value instanceof Dataset) {
             return DatasetExpression.of((Dataset) value);
         }
 
         if (value instanceof Structured.Component) {
             var component = (Structured.Component) value;
-            String name = component.getName();
-            Class type = component.getType();
-            return ResolvableExpression.withType(type, c -> c.get(name));
+            Map<?, ?> components = context;
+            if (components instanceof Structured.DataStructure) {
+                return new ComponentExpression(component, (Structured.DataStructure) components);
+            }
+            return new ComponentExpression(component);
         }
 
         if (value instanceof Integer || value instanceof Long) {
@@ -4,6 +4,7 @@ import fr.insee.vtl.engine.exceptions.InvalidArgumentException;
 import fr.insee.vtl.engine.exceptions.VtlRuntimeException;
 import fr.insee.vtl.engine.visitors.expression.ExpressionVisitor;
 import fr.insee.vtl.model.DoubleExpression;
+import fr.insee.vtl.model.FunctionExpression;
 import fr.insee.vtl.model.LongExpression;
 import fr.insee.vtl.model.ResolvableExpression;
 import fr.insee.vtl.parser.VtlBaseVisitor;
@@ -67,52 +68,27 @@ public class NumericFunctionsVisitor extends VtlBaseVisitor<ResolvableExpression
 
     private ResolvableExpression handleCeil(VtlParser.ExprContext expr) {
         var expression = assertNumber(exprVisitor.visit(expr), expr);
-        return LongExpression.of(context -> {
-            Number exprNumber = (Number) expression.resolve(context);
-            if (exprNumber == null) return null;
-            Double exprDouble = exprNumber.doubleValue();
-            return ((Double) (Math.ceil(exprDouble))).longValue();
-        });
+        return new FunctionExpression(FunctionExpression.Function.CEIL, expression);
     }
 
     private ResolvableExpression handleFloor(VtlParser.ExprContext expr) {
         var expression = assertNumber(exprVisitor.visit(expr), expr);
-        return LongExpression.of(context -> {
-            Number exprNumber = (Number) expression.resolve(context);
-            if (exprNumber == null) return null;
-            Double exprDouble = exprNumber.doubleValue();
-            return ((Double) (Math.floor(exprDouble))).longValue();
-        });
+        return new FunctionExpression(FunctionExpression.Function.FLOOR, expression);
     }
 
     private ResolvableExpression handleAbs(VtlParser.ExprContext expr) {
         var expression = assertNumber(exprVisitor.visit(expr), expr);
-        return DoubleExpression.of(context -> {
-            Number exprNumber = (Number) expression.resolve(context);
-            if (exprNumber == null) return null;
-            Double exprDouble = exprNumber.doubleValue();
-            return Math.abs(exprDouble);
-        });
+        return new FunctionExpression(FunctionExpression.Function.ABS, expression);
     }
 
     private ResolvableExpression handleExp(VtlParser.ExprContext expr) {
         var expression = assertNumber(exprVisitor.visit(expr), expr);
-        return DoubleExpression.of(context -> {
-            Number exprNumber = (Number) expression.resolve(context);
-            if (exprNumber == null) return null;
-            Double exprDouble = exprNumber.doubleValue();
-            return Math.exp(exprDouble);
-        });
+        return new FunctionExpression(FunctionExpression.Function.EXP, expression);
     }
 
     private ResolvableExpression handleLn(VtlParser.ExprContext expr) {
         var expression = assertNumber(exprVisitor.visit(expr), expr);
-        return DoubleExpression.of(context -> {
-            Number exprNumber = (Number) expression.resolve(context);
-            if (exprNumber == null) return null;
-            Double exprDouble = exprNumber.doubleValue();
-            return Math.log(exprDouble);
-        });
+        return new FunctionExpression(FunctionExpression.Function.LN, expression);
     }
 
     private ResolvableExpression handleSqrt(VtlParser.ExprContext expr) {
@@ -2,6 +2,7 @@ package fr.insee.vtl.engine.visitors.expression.functions;
 
 import fr.insee.vtl.engine.utils.TypeChecking;
 import fr.insee.vtl.engine.visitors.expression.ExpressionVisitor;
+import fr.insee.vtl.model.FunctionExpression;
 import fr.insee.vtl.model.LongExpression;
 import fr.insee.vtl.model.ResolvableExpression;
 import fr.insee.vtl.model.StringExpression;
@@ -10,7 +11,6 @@ import fr.insee.vtl.parser.VtlParser;
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.Objects;
-import java.util.regex.Pattern;
 
 import static fr.insee.vtl.engine.utils.TypeChecking.assertLong;
 import static fr.insee.vtl.engine.utils.TypeChecking.assertString;
@@ -20,9 +20,6 @@ import static fr.insee.vtl.engine.utils.TypeChecking.assertString;
  */
 public class StringFunctionsVisitor extends VtlBaseVisitor<ResolvableExpression> {
 
-    private final Pattern LTRIM = Pattern.compile("^\\s+");
-    private final Pattern RTRIM = Pattern.compile("\\s+$");
-
     private final ExpressionVisitor exprVisitor;
 
     /**
@@ -63,56 +60,32 @@ public class StringFunctionsVisitor extends VtlBaseVisitor<ResolvableExpression>
 
     private ResolvableExpression handleRTrim(VtlParser.ExprContext expressionCtx) {
         ResolvableExpression expression = assertString(exprVisitor.visit(expressionCtx), expressionCtx);
-        return StringExpression.of(context -> {
-            String value = (String) expression.resolve(context);
-            if (value == null) return null;
-            return RTRIM.matcher(value).replaceAll("");
-        });
+        return new FunctionExpression(FunctionExpression.Function.RTRIM, expression);
     }
 
     private ResolvableExpression handleUCase(VtlParser.ExprContext expressionCtx) {
         ResolvableExpression expression = assertString(exprVisitor.visit(expressionCtx), expressionCtx);
-        return StringExpression.of(context -> {
-            String value = (String) expression.resolve(context);
-            if (value == null) return null;
-            return value.toUpperCase();
-        });
+        return new FunctionExpression(FunctionExpression.Function.UPPER, expression);
     }
 
     private ResolvableExpression handleLCase(VtlParser.ExprContext expressionCtx) {
         ResolvableExpression expression = assertString(exprVisitor.visit(expressionCtx), expressionCtx);
-        return StringExpression.of(context -> {
-            String value = (String) expression.resolve(context);
-            if (value == null) return null;
-            return value.toLowerCase();
-        });
+        return new FunctionExpression(FunctionExpression.Function.LOWER, expression);
     }
 
     private ResolvableExpression handleLen(VtlParser.ExprContext expressionCtx) {
         ResolvableExpression expression = assertString(exprVisitor.visit(expressionCtx), expressionCtx);
-        return LongExpression.of(context -> {
-            String value = (String) expression.resolve(context);
-            if (value == null) return null;
-            return (long) value.length();
-        });
+        return new FunctionExpression(FunctionExpression.Function.LENGTH, expression);
     }
 
     private ResolvableExpression handleLTrim(VtlParser.ExprContext expressionCtx) {
         ResolvableExpression expression = assertString(exprVisitor.visit(expressionCtx), expressionCtx);
-        return StringExpression.of(context -> {
-            String value = (String) expression.resolve(context);
-            if (value == null) return null;
-            return LTRIM.matcher(value).replaceAll("");
-        });
+        return new FunctionExpression(FunctionExpression.Function.LTRIM, expression);
     }
 
     private ResolvableExpression handleTrim(VtlParser.ExprContext expressionCtx) {
         ResolvableExpression expression = assertString(exprVisitor.visit(expressionCtx), expressionCtx);
-        return StringExpression.of(context -> {
-            String value = (String) expression.resolve(context);
-            if (value == null) return null;
-            return value.trim();
-        });
+        return new FunctionExpression(FunctionExpression.Function.TRIM, expression);
     }
 
     /**
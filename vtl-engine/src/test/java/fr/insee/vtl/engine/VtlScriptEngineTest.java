@@ -4,14 +4,17 @@ import fr.insee.vtl.engine.exceptions.InvalidTypeException;
 import fr.insee.vtl.engine.exceptions.UndefinedVariableException;
 import fr.insee.vtl.engine.exceptions.VtlScriptException;
 import fr.insee.vtl.engine.exceptions.VtlSyntaxException;
+import fr.insee.vtl.engine.processors.InMemoryProcessingEngine;
 import fr.insee.vtl.model.ProcessingEngine;
 import org.assertj.core.api.Condition;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
-import javax.script.ScriptException;
+import javax.script.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -46,6 +49,32 @@ public class VtlScriptEngineTest {
         VtlScriptEngine vtlScriptEngine = (VtlScriptEngine) engine;
         ProcessingEngine processingEngines = vtlScriptEngine.getProcessingEngine();
         assertThat(processingEngines).isNotNull();
+        assertThat(vtlScriptEngine.getProcessingEngine()).isSameAs(processingEngines);
+
+        engine.put("notConfiguration", 42L);
+        assertThat(vtlScriptEngine.getProcessingEngine()).isSameAs(processingEngines);
+
+        engine.put(VtlScriptEngine.PROCESSING_ENGINE_NAMES, "unknown, memory");
+        ProcessingEngine memoryEngine = vtlScriptEngine.getProcessingEngine();
+        assertThat(memoryEngine).isNotSameAs(processingEngines);
+        assertThat(vtlScriptEngine.getProcessingEngine()).isSameAs(memoryEngine);
+
+        // The configuration of the script engine does not replace the processing engine, its own does.
+        engine.put(VtlScriptEngine.EXACT_MEDIAN, true);
+        engine.put(VtlScriptEngine.LAZY_ASSIGNMENT, true);
+        assertThat(vtlScriptEngine.getProcessingEngine()).isSameAs(memoryEngine);
+        engine.put(InMemoryProcessingEngine.Factory.AGGREGATION_PARALLELISM, 2);
+        ProcessingEngine parallelEngine = vtlScriptEngine.getProcessingEngine();
+        assertThat(parallelEngine).isNotSameAs(memoryEngine);
+
+        // Equal configuration values keep the processing engine.
+        engine.put(VtlScriptEngine.PROCESSING_ENGINE_NAMES, String.join(", ", "unknown", "memory"));
+        assertThat(vtlScriptEngine.getProcessingEngine()).isSameAs(parallelEngine);
+
+        engine.put(VtlScriptEngine.PROCESSING_ENGINE_NAMES, "unknown");
+        assertThatThrownBy(vtlScriptEngine::getProcessingEngine)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("no processing engine found for $vtl.engine.processing_engine_names [unknown]");
     }
 
     @Test
@@ -72,5 +101,68 @@ public class VtlScriptEngineTest {
                 .isInstanceOf(VtlSyntaxException.class)
                 .hasMessage("missing ';' at '<EOF>'")
         .is(atPosition(0, 14 ,14));
+
+        assertThatThrownBy(() -> {
+            engine.eval("a := 1;\nb := a + ;\nc := 3;");
+        })
+                .isInstanceOf(VtlSyntaxException.class)
+                .hasMessageStartingWith("extraneous input ';' expecting")
+                .is(atPosition(1, 9, 10));
+    }
+
+    @Test
+    public void testCompiledScript() throws ScriptException {
+        CompiledScript script = ((Compilable) engine).compile("res := a + b; isPositive := res > 0;");
+
+        Bindings bindings = new SimpleBindings(new HashMap<>(Map.of("a", 1L, "b", 2L)));
+        script.eval(bindings);
+        assertThat(bindings).containsEntry("res", 3L).containsEntry("isPositive", true);
+
+        bindings = new SimpleBindings(new HashMap<>(Map.of("a", 5L, "b", -7L)));
+        script.eval(bindings);
+        assertThat(bindings).containsEntry("res", -2L).containsEntry("isPositive", false);
+
+        assertThatThrownBy(() -> {
+            ((Compilable) engine).compile("var := 40 + 42");
+        })
+                .isInstanceOf(VtlSyntaxException.class)
+                .hasMessage("missing ';' at '<EOF>'")
+                .is(atPosition(0, 14, 14));
+    }
+
+    @Test
+    public void testScriptCache() throws ScriptException {
+        for (long size : new long[]{1L, 0L, 1L}) {
+            engine.put(VtlScriptEngine.SCRIPT_CACHE_SIZE, size);
+            for (long i = 0; i < 3; i++) {
+                engine.put("a", i);
+                engine.eval("res := a * 2;");
+                assertThat(engine.get("res")).isEqualTo(i * 2);
+                engine.eval("other := a;");
+            }
+        }
+    }
+
+    @Test
+    public void testParallelStatements() throws ScriptException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            engine.put(VtlScriptEngine.EXECUTOR, executor);
+            engine.put("x", 5L);
+            Object result = engine.eval("a := x + 1; b := x * 2; c := a + b; x := 10; d := x + c; a := 0; e := a;");
+            assertThat(result).isEqualTo(0L);
+            assertThat(engine.getBindings(ScriptContext.ENGINE_SCOPE)).containsEntry("a", 0L)
+                    .containsEntry("b", 10L).containsEntry("c", 16L).containsEntry("x", 10L)
+                    .containsEntry("d", 26L).containsEntry("e", 0L);
+
+            assertThatThrownBy(() -> {
+                engine.eval("f := 1; g := undefinedVariable + 42; h := g;");
+            }).isInstanceOf(UndefinedVariableException.class)
+                    .hasMessage("undefined variable undefinedVariable");
+            assertThat(engine.get("f")).isEqualTo(1L);
+            assertThat(engine.getBindings(ScriptContext.ENGINE_SCOPE)).doesNotContainKey("h");
+        } finally {
+            executor.shutdown();
+        }
     }
-}
\ No newline at end of file
+}
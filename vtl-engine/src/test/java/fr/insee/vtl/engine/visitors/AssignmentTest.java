@@ -1,5 +1,10 @@
 package fr.insee.vtl.engine.visitors;
 
+import fr.insee.vtl.engine.VtlScriptEngine;
+import fr.insee.vtl.model.Dataset;
+import fr.insee.vtl.model.InMemoryDataset;
+import fr.insee.vtl.model.StreamDataset;
+import fr.insee.vtl.model.Structured;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -7,7 +12,10 @@ import javax.script.Bindings;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -41,4 +49,85 @@ public class AssignmentTest {
         assertThat(bindings.get("f")).isNull();
     }
 
-}
\ No newline at end of file
+    private static Dataset countingDataset(AtomicInteger reads) {
+        var source = new InMemoryDataset(
+                List.of(
+                        new Structured.Component("name", String.class, Dataset.Role.IDENTIFIER),
+                        new Structured.Component("age", Long.class, Dataset.Role.MEASURE)
+                ),
+                Arrays.asList("Hadrien", 10L),
+                Arrays.asList("Nico", 11L),
+                Arrays.asList("Franck", 12L)
+        );
+        return new StreamDataset(source.getDataStructure(), () -> {
+            reads.incrementAndGet();
+            return source.stream();
+        });
+    }
+
+    @Test
+    public void testLazyAssignment() throws ScriptException {
+        var reads = new AtomicInteger();
+        var dataset = countingDataset(reads);
+
+        engine.put(VtlScriptEngine.LAZY_ASSIGNMENT, true);
+        Bindings bindings = engine.createBindings();
+        bindings.put("ds1", dataset);
+        engine.eval("a := ds1[calc x := age + 1]; " +
+                "b := a[filter x > 11]; " +
+                "unused := ds1[calc y := age];", bindings);
+
+        assertThat(reads).hasValue(0);
+        assertThat(((Dataset) bindings.get("b")).getDataAsMap()).containsExactly(
+                Map.of("name", "Nico", "age", 11L, "x", 12L),
+                Map.of("name", "Franck", "age", 12L, "x", 13L)
+        );
+        assertThat(reads).hasValue(1);
+
+        ((Dataset) bindings.get("unused")).getDataPoints();
+        assertThat(reads).hasValue(2);
+        ((Dataset) bindings.get("a")).getDataPoints();
+        assertThat(reads).hasValue(3);
+        ((Dataset) bindings.get("b")).getDataPoints();
+        assertThat(reads).hasValue(3);
+    }
+
+    @Test
+    public void testLazyAssignmentReadTwiceByAStatement() throws ScriptException {
+        var reads = new AtomicInteger();
+
+        engine.put(VtlScriptEngine.LAZY_ASSIGNMENT, true);
+        Bindings bindings = engine.createBindings();
+        bindings.put("ds1", countingDataset(reads));
+        engine.eval("a := ds1[calc x := age + 1]; " +
+                "b := union(a, a);", bindings);
+
+        assertThat(((Dataset) bindings.get("b")).getDataAsMap()).hasSize(3);
+        assertThat(reads).hasValue(1);
+    }
+
+    @Test
+    public void testCommonSubexpressions() throws ScriptException {
+        var reads = new AtomicInteger();
+        Bindings bindings = engine.createBindings();
+        bindings.put("ds1", countingDataset(reads));
+        engine.eval("a := ds1[filter age > 10]; " +
+                "b := ds1 [ filter age>10 ]; " +
+                "c := ds1[filter age > 11];", bindings);
+
+        assertThat(reads).hasValue(2);
+        assertThat(bindings.get("b")).isSameAs(bindings.get("a"));
+        assertThat(((Dataset) bindings.get("b")).getDataAsMap()).containsExactly(
+                Map.of("name", "Nico", "age", 11L),
+                Map.of("name", "Franck", "age", 12L)
+        );
+
+        // The same expression is not shared once the variables it reads are bound to other values.
+        engine.eval("a := ds1[filter age > 10]; " +
+                "ds1 := ds1[calc age := age + 1]; " +
+                "b := ds1[filter age > 10];", bindings);
+
+        assertThat(((Dataset) bindings.get("a")).getDataAsMap()).hasSize(2);
+        assertThat(((Dataset) bindings.get("b")).getDataAsMap()).hasSize(3);
+    }
+}
@@ -1,7 +1,9 @@
 package fr.insee.vtl.engine.visitors;
 
+import fr.insee.vtl.model.ColumnarDataset;
 import fr.insee.vtl.model.Dataset;
 import fr.insee.vtl.model.InMemoryDataset;
+import fr.insee.vtl.model.StreamDataset;
 import fr.insee.vtl.model.Structured;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,12 +12,11 @@ import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 import static fr.insee.vtl.model.Dataset.Role;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
 
 public class ClauseVisitorTest {
 
@@ -168,6 +169,124 @@ public class ClauseVisitorTest {
 
     }
 
+    @Test
+    public void testChainedClauses() throws ScriptException {
+        InMemoryDataset dataset = new InMemoryDataset(
+                List.of(
+                        new Structured.Component("name", String.class, Role.IDENTIFIER),
+                        new Structured.Component("age", Long.class, Role.MEASURE),
+                        new Structured.Component("weight", Long.class, Role.MEASURE)
+                ),
+                Arrays.asList("Hadrien", 10L, 11L),
+                Arrays.asList("Nico", 11L, 10L),
+                Arrays.asList("Franck", 12L, 9L)
+        );
+
+        ScriptContext context = engine.getContext();
+        context.setAttribute("ds1", dataset, ScriptContext.ENGINE_SCOPE);
+
+        engine.eval("ds := ds1[filter age > 10][calc double := age * 2][rename double to twice][keep name, twice];");
+
+        var ds = (Dataset) context.getAttribute("ds");
+        assertThat(ds).isInstanceOf(StreamDataset.class);
+        assertThat(ds.getDataAsMap()).containsExactly(
+                Map.of("name", "Nico", "twice", 22L),
+                Map.of("name", "Franck", "twice", 24L)
+        );
+    }
+
+    @Test
+    public void testChainedClausesOnCalculatedColumns() throws ScriptException {
+        InMemoryDataset dataset = new InMemoryDataset(
+                List.of(
+                        new Structured.Component("name", String.class, Role.IDENTIFIER),
+                        new Structured.Component("age", Long.class, Role.MEASURE),
+                        new Structured.Component("weight", Long.class, Role.MEASURE)
+                ),
+                Arrays.asList("Hadrien", 10L, 11L),
+                Arrays.asList("Nico", 11L, 10L),
+                Arrays.asList("Franck", 12L, 9L)
+        );
+
+        ScriptContext context = engine.getContext();
+        context.setAttribute("ds1", dataset, ScriptContext.ENGINE_SCOPE);
+
+        engine.eval("ds := ds1[calc age := age + weight, score := age * 2 + weight][rename score to grade]" +
+                "[filter grade > 31][calc weight := grade - age][drop age];");
+
+        var ds = (Dataset) context.getAttribute("ds");
+        assertThat(ds.getColumnNames()).containsExactly("name", "weight", "grade");
+        assertThat(ds.getDataAsMap()).containsExactly(
+                Map.of("name", "Nico", "weight", 11L, "grade", 32L),
+                Map.of("name", "Franck", "weight", 12L, "grade", 33L)
+        );
+    }
+
+    @Test
+    public void testColumnarDataset() throws ScriptException {
+        var dataset = new ColumnarDataset(
+                List.of(
+                        Arrays.asList("Toto", null, 100.5, null),
+                        Arrays.asList("Hadrien", 10L, 11.5, true),
+                        Arrays.asList("Nico", 11L, null, false),
+                        Arrays.asList("Franck", 12L, 9.0, true)
+                ),
+                List.of(
+                        new Structured.Component("name", String.class, Role.IDENTIFIER),
+                        new Structured.Component("age", Long.class, Role.MEASURE),
+                        new Structured.Component("weight", Double.class, Role.MEASURE),
+                        new Structured.Component("adult", Boolean.class, Role.MEASURE)
+                )
+        );
+        assertThat(dataset.getDataAsList()).containsExactly(
+                Arrays.asList("Toto", null, 100.5, null),
+                Arrays.asList("Hadrien", 10L, 11.5, true),
+                Arrays.asList("Nico", 11L, null, false),
+                Arrays.asList("Franck", 12L, 9.0, true)
+        );
+
+        ScriptContext context = engine.getContext();
+        context.setAttribute("ds1", dataset, ScriptContext.ENGINE_SCOPE);
+
+        engine.eval("ds := ds1[filter adult][calc ratio := weight / age][keep name, ratio];");
+
+        assertThat(((Dataset) context.getAttribute("ds")).getDataAsMap()).containsExactly(
+                Map.of("name", "Hadrien", "ratio", 1.15),
+                Map.of("name", "Franck", "ratio", 0.75)
+        );
+    }
+
+    @Test
+    public void testClausesOnSeveralBatches() throws ScriptException {
+        List<List<Object>> data = new ArrayList<>();
+        List<List<Object>> expected = new ArrayList<>();
+        for (long i = 0; i < 2500; i++) {
+            Long age = i % 7 == 0 ? null : i;
+            Double weight = i % 5 == 0 ? null : i / 2.0;
+            data.add(Arrays.asList("n" + i, age, weight));
+            if (age != null && age > 10 && (weight != null && weight < 1000.0 || age == 11)) {
+                expected.add(Arrays.asList("n" + i, age * 2 - 1, weight == null ? null : weight / 2));
+            }
+        }
+        var structure = List.of(
+                new Structured.Component("name", String.class, Role.IDENTIFIER),
+                new Structured.Component("age", Long.class, Role.MEASURE),
+                new Structured.Component("weight", Double.class, Role.MEASURE)
+        );
+
+        ScriptContext context = engine.getContext();
+        context.setAttribute("ds1", new InMemoryDataset(data, structure), ScriptContext.ENGINE_SCOPE);
+        context.setAttribute("ds2", new ColumnarDataset(data, structure), ScriptContext.ENGINE_SCOPE);
+
+        engine.eval("ds3 := ds1[filter age > 10 and (weight < 1000.0 or age = 11)]" +
+                "[calc age := age * 2 - 1, weight := weight / 2];");
+        engine.eval("ds4 := ds2[filter age > 10 and (weight < 1000.0 or age = 11)]" +
+                "[calc age := age * 2 - 1, weight := weight / 2];");
+
+        assertThat(((Dataset) context.getAttribute("ds3")).getDataAsList()).isEqualTo(expected);
+        assertThat(((Dataset) context.getAttribute("ds4")).getDataAsList()).isEqualTo(expected);
+    }
+
     @Test
     public void testKeepDropClause() throws ScriptException {
         InMemoryDataset dataset = new InMemoryDataset(
@@ -202,6 +321,29 @@ public class ClauseVisitorTest {
         );
     }
 
+    @Test
+    public void testClausesKeepSourceValues() throws ScriptException {
+        Long age = 100000L;
+        Double weight = 75.5;
+        var dataset = new InMemoryDataset(
+                List.of(
+                        new Structured.Component("name", String.class, Role.IDENTIFIER),
+                        new Structured.Component("age", Long.class, Role.MEASURE),
+                        new Structured.Component("weight", Double.class, Role.MEASURE)
+                ),
+                Arrays.asList("Hadrien", age, weight)
+        );
+        ScriptContext context = engine.getContext();
+        context.setAttribute("ds1", dataset, ScriptContext.ENGINE_SCOPE);
+
+        engine.eval("ds := ds1[filter age > 10][rename age to years][keep name, years, weight];");
+
+        var dataPoint = ((Dataset) context.getAttribute("ds")).getDataPoints().get(0);
+        // The values copied to the output are not converted.
+        assertThat(dataPoint.get("years")).isSameAs(age);
+        assertThat(dataPoint.get("weight")).isSameAs(weight);
+    }
+
     @Test
     public void testAggregate() throws ScriptException {
 
@@ -236,4 +378,194 @@ public class ClauseVisitorTest {
 
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testAggregateOnSeveralBatches() throws ScriptException {
+        List<List<Object>> data = new ArrayList<>();
+        Map<List<Object>, long[]> groups = new TreeMap<>(Comparator
+                .<List<Object>, String>comparing(key -> (String) key.get(0))
+                .thenComparing(key -> (Long) key.get(1), Comparator.nullsFirst(Comparator.naturalOrder())));
+        for (long i = 0; i < 2500; i++) {
+            String country = "c" + (i % 30);
+            Long year = i % 4 == 0 ? null : 2000 + i % 4;
+            Long age = i % 7 == 0 ? null : i;
+            data.add(Arrays.asList("n" + i, country, year, age));
+            // The sum of the ages, the number of ages and the number of rows.
+            var group = groups.computeIfAbsent(Arrays.asList(country, year), key -> new long[3]);
+            if (age != null) {
+                group[0] += age;
+                group[1]++;
+            }
+            group[2]++;
+        }
+        List<List<Object>> expected = new ArrayList<>();
+        groups.forEach((key, group) -> expected.add(Arrays.asList(key.get(0), key.get(1),
+                group[0], (double) group[0] / group[1], group[2])));
+        var structure = List.of(
+                new Structured.Component("name", String.class, Role.IDENTIFIER),
+                new Structured.Component("country", String.class, Role.IDENTIFIER),
+                new Structured.Component("year", Long.class, Role.IDENTIFIER),
+                new Structured.Component("age", Long.class, Role.MEASURE)
+        );
+
+        ScriptContext context = engine.getContext();
+        context.setAttribute("ds1", new InMemoryDataset(data, structure), ScriptContext.ENGINE_SCOPE);
+        context.setAttribute("ds2", new ColumnarDataset(data, structure), ScriptContext.ENGINE_SCOPE);
+
+        engine.eval("ds3 := ds1[aggr sumAge := sum(age), avgAge := avg(age), countVal := count(null) " +
+                "group by country, year];");
+        engine.eval("ds4 := ds2[aggr sumAge := sum(age), avgAge := avg(age), countVal := count(null) " +
+                "group by year, country];");
+
+        var ds3 = (Dataset) context.getAttribute("ds3");
+        assertThat(ds3.getDataAsList()).isEqualTo(expected);
+        assertThat(ds3.getSortOrder()).containsExactly("country", "year");
+        assertThat(((Dataset) context.getAttribute("ds4")).getDataAsList()).isEqualTo(expected);
+    }
+
+    @Test
+    public void testAggregateInParallel() throws ScriptException {
+        List<List<Object>> data = new ArrayList<>();
+        for (long i = 0; i < 20000; i++) {
+            data.add(Arrays.asList("n" + i, "c" + (i % 100), i % 3 == 0 ? null : 2000 + i % 3,
+                    i % 7 == 0 ? null : i));
+        }
+        var structure = List.of(
+                new Structured.Component("name", String.class, Role.IDENTIFIER),
+                new Structured.Component("country", String.class, Role.IDENTIFIER),
+                new Structured.Component("year", Long.class, Role.IDENTIFIER),
+                new Structured.Component("age", Long.class, Role.MEASURE)
+        );
+
+        ScriptContext context = engine.getContext();
+        context.setAttribute("ds1", new InMemoryDataset(data, structure), ScriptContext.ENGINE_SCOPE);
+        context.setAttribute("ds2", new ColumnarDataset(data, structure), ScriptContext.ENGINE_SCOPE);
+        var script = "ds3 := ds1[aggr sumAge := sum(age), avgAge := avg(age), countVal := count(null) " +
+                "group by country, year];" +
+                "ds4 := ds2[aggr sumAge := sum(age), avgAge := avg(age), countVal := count(null) " +
+                "group by country, year];";
+
+        engine.eval(script);
+        var expected = ((Dataset) context.getAttribute("ds3")).getDataAsList();
+        assertThat(expected).hasSize(300);
+
+        context.setAttribute("$vtl.memory.aggregation_parallelism", 4, ScriptContext.ENGINE_SCOPE);
+        engine.eval(script);
+        assertThat(((Dataset) context.getAttribute("ds3")).getDataAsList()).isEqualTo(expected);
+        assertThat(((Dataset) context.getAttribute("ds4")).getDataAsList()).isEqualTo(expected);
+    }
+
+    @Test
+    public void testAggregateStatistics() throws ScriptException {
+        var dataset = new InMemoryDataset(
+                List.of(
+                        new Structured.Component("name", String.class, Role.IDENTIFIER),
+                        new Structured.Component("country", String.class, Role.IDENTIFIER),
+                        new Structured.Component("age", Long.class, Role.MEASURE),
+                        new Structured.Component("weight", Double.class, Role.MEASURE)
+                ),
+                Arrays.asList("Hadrien", "norway", 10L, 11.0),
+                Arrays.asList("Nico", "france", 11L, 10.0),
+                Arrays.asList("Franck", "france", 12L, 9.0),
+                Arrays.asList("Toto", "france", null, 5.0),
+                Arrays.asList("Titi", "france", 16L, null)
+        );
+
+        ScriptContext context = engine.getContext();
+        context.setAttribute("ds1", dataset, ScriptContext.ENGINE_SCOPE);
+
+        engine.eval("res := ds1[aggr " +
+                "minAge := min(age), maxAge := max(age), minWeight := min(weight), maxName := max(name), " +
+                "medianAge := median(age), medianWeight := median(weight), " +
+                "varPop := var_pop(age), varSamp := var_samp(age), " +
+                "stddevPop := stddev_pop(weight), stddevSamp := stddev_samp(weight) " +
+                "group by country];");
+        var res = (Dataset) context.getAttribute("res");
+        assertThat(res.getDataStructure().get("minAge").getType()).isEqualTo(Long.class);
+        assertThat(res.getDataStructure().get("maxName").getType()).isEqualTo(String.class);
+        assertThat(res.getDataStructure().get("medianAge").getType()).isEqualTo(Double.class);
+
+        var france = res.getDataAsMap().get(0);
+        assertThat(france).containsAllEntriesOf(Map.of(
+                "country", "france", "minAge", 11L, "maxAge", 16L, "minWeight", 5.0, "maxName", "Toto",
+                "medianAge", 12.0, "medianWeight", 9.0));
+        assertThat((Double) france.get("varPop")).isCloseTo(14.0 / 3, within(1e-9));
+        assertThat((Double) france.get("varSamp")).isCloseTo(7.0, within(1e-9));
+        assertThat((Double) france.get("stddevPop")).isCloseTo(Math.sqrt(14.0 / 3), within(1e-9));
+        assertThat((Double) france.get("stddevSamp")).isCloseTo(Math.sqrt(7.0), within(1e-9));
+
+        // The sample dispersions are not defined for a single value.
+        var norway = res.getDataAsMap().get(1);
+        assertThat(norway).containsAllEntriesOf(Map.of(
+                "minAge", 10L, "maxAge", 10L, "medianAge", 10.0, "varPop", 0.0, "stddevPop", 0.0));
+        assertThat(norway.get("varSamp")).isNull();
+        assertThat(norway.get("stddevSamp")).isNull();
+    }
+
+    @Test
+    public void testMedianAtSketchCapacity() throws ScriptException {
+        List<List<Object>> data = new ArrayList<>();
+        List<List<Long>> values = List.of(new ArrayList<>(), new ArrayList<>());
+        for (long i = 0; i < 256 + 257; i++) {
+            int group = i < 256 ? 0 : 1;
+            long age = (i * 7919) % 1009;
+            data.add(Arrays.asList("n" + i, "c" + group, age));
+            values.get(group).add(age);
+        }
+        var structure = List.of(
+                new Structured.Component("name", String.class, Role.IDENTIFIER),
+                new Structured.Component("country", String.class, Role.IDENTIFIER),
+                new Structured.Component("age", Long.class, Role.MEASURE)
+        );
+        ScriptContext context = engine.getContext();
+        context.setAttribute("ds1", new InMemoryDataset(data, structure), ScriptContext.ENGINE_SCOPE);
+
+        engine.eval("res := ds1[aggr medianAge := median(age) group by country];");
+        Map<Object, Object> medians = new HashMap<>();
+        for (Map<String, Object> row : ((Dataset) context.getAttribute("res")).getDataAsMap()) {
+            medians.put(row.get("country"), row.get("medianAge"));
+        }
+
+        var full = values.get(0);
+        Collections.sort(full);
+        // A group of as many values as the capacity of the sketch has an exact median.
+        assertThat(medians.get("c0")).isEqualTo((full.get(127) + full.get(128)) / 2.0);
+        var over = values.get(1);
+        Collections.sort(over);
+        assertThat((Double) medians.get("c1")).isCloseTo((double) over.get(128), within(50.0));
+    }
+
+    @Test
+    public void testMedianOfLargeGroups() throws ScriptException {
+        List<List<Object>> data = new ArrayList<>();
+        List<List<Long>> values = List.of(new ArrayList<>(), new ArrayList<>());
+        for (long i = 0; i < 100000; i++) {
+            long age = (i * 7919) % 100003;
+            data.add(Arrays.asList("n" + i, "c" + (i % 2), age));
+            values.get((int) (i % 2)).add(age);
+        }
+        var structure = List.of(
+                new Structured.Component("name", String.class, Role.IDENTIFIER),
+                new Structured.Component("country", String.class, Role.IDENTIFIER),
+                new Structured.Component("age", Long.class, Role.MEASURE)
+        );
+        ScriptContext context = engine.getContext();
+        context.setAttribute("ds1", new ColumnarDataset(data, structure), ScriptContext.ENGINE_SCOPE);
+
+        engine.eval("res := ds1[aggr medianAge := median(age) group by country];");
+        var estimated = ((Dataset) context.getAttribute("res")).getDataAsMap();
+
+        context.setAttribute("$vtl.engine.exact_median", true, ScriptContext.ENGINE_SCOPE);
+        engine.eval("res := ds1[aggr medianAge := median(age) group by country];");
+        var exact = ((Dataset) context.getAttribute("res")).getDataAsMap();
+
+        for (int group = 0; group < 2; group++) {
+            var sorted = values.get(group);
+            Collections.sort(sorted);
+            double median = (sorted.get(24999) + sorted.get(25000)) / 2.0;
+            assertThat(exact.get(group).get("medianAge")).isEqualTo(median);
+            // The estimate is within 1% of the range of the values.
+            assertThat((Double) estimated.get(group).get("medianAge")).isCloseTo(median, within(1000.0));
+        }
+    }
+}
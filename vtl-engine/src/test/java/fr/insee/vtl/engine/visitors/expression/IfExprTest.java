@@ -1,6 +1,9 @@
 package fr.insee.vtl.engine.visitors.expression;
 
 import fr.insee.vtl.engine.exceptions.InvalidTypeException;
+import fr.insee.vtl.model.Dataset;
+import fr.insee.vtl.model.InMemoryDataset;
+import fr.insee.vtl.model.Structured;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -8,6 +11,8 @@ import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -40,6 +45,27 @@ public class IfExprTest {
         assertThat(context.getAttribute("l")).isEqualTo(0L);
     }
 
+    @Test
+    public void testIfExprWithComponents() throws ScriptException {
+        ScriptContext context = engine.getContext();
+        var dataset = new InMemoryDataset(
+                List.of(
+                        new Structured.Component("name", String.class, Dataset.Role.IDENTIFIER),
+                        new Structured.Component("age", Long.class, Dataset.Role.MEASURE)
+                ),
+                Arrays.asList("Hadrien", 10L),
+                Arrays.asList("Nico", 11L),
+                Arrays.asList("Toto", null)
+        );
+        context.setAttribute("ds1", dataset, ScriptContext.ENGINE_SCOPE);
+
+        engine.eval("ds := ds1[calc older := if age > 10 or name = \"Toto\" then \"yes\" else \"no\"];");
+
+        assertThat(((Dataset) context.getAttribute("ds")).getDataAsMap())
+                .extracting(dataPoint -> dataPoint.get("older"))
+                .containsExactly("no", "yes", "yes");
+    }
+
     @Test
     public void testIfTypeExceptions() {
         assertThatThrownBy(() -> {
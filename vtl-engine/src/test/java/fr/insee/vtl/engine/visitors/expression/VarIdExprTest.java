@@ -1,5 +1,8 @@
 package fr.insee.vtl.engine.visitors.expression;
 
+import fr.insee.vtl.model.Dataset;
+import fr.insee.vtl.model.InMemoryDataset;
+import fr.insee.vtl.model.Structured;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -7,6 +10,9 @@ import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -52,4 +58,26 @@ public class VarIdExprTest {
         assertThat(context.getAttribute("theFloat"))
                 .isEqualTo(1.5D);
     }
+
+    @Test
+    public void testComponentVariables() throws ScriptException {
+        ScriptContext context = engine.getContext();
+
+        var dataset = new InMemoryDataset(
+                List.of(
+                        new Structured.Component("name", String.class, Dataset.Role.IDENTIFIER),
+                        new Structured.Component("age", Long.class, Dataset.Role.MEASURE),
+                        new Structured.Component("weight", Long.class, Dataset.Role.MEASURE)
+                ),
+                Arrays.asList("Hadrien", 10L, 11L),
+                Arrays.asList("Nico", 11L, 10L)
+        );
+        context.setAttribute("ds1", dataset, ScriptContext.ENGINE_SCOPE);
+
+        engine.eval("ds := ds1[rename age to years][filter weight > 10][calc mass := years + weight];");
+
+        assertThat(((Dataset) context.getAttribute("ds")).getDataAsMap()).containsExactly(
+                Map.of("name", "Hadrien", "years", 10L, "weight", 11L, "mass", 21L)
+        );
+    }
 }
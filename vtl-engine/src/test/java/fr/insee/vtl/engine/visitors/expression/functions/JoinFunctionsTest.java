@@ -84,6 +84,70 @@ public class JoinFunctionsTest {
         );
     }
 
+    @Test
+    public void testFilterAfterJoin() throws ScriptException {
+
+        engine.getContext().setAttribute("ds1", ds1, ScriptContext.ENGINE_SCOPE);
+        engine.getContext().setAttribute("ds2", ds2, ScriptContext.ENGINE_SCOPE);
+
+        engine.eval("result := inner_join(ds1, ds2)[filter m1 > 1 and m2 < 10];");
+        assertThat(((Dataset) engine.getContext().getAttribute("result")).getDataAsList()).containsExactlyInAnyOrder(
+                Arrays.asList("a", 2L, 2L, 8L),
+                Arrays.asList("b", 1L, 3L, 9L)
+        );
+
+        engine.eval("result := left_join(ds1, ds2)[filter m1 > 4];");
+        assertThat(((Dataset) engine.getContext().getAttribute("result")).getDataAsList()).containsExactlyInAnyOrder(
+                Arrays.asList("c", 1L, 5L, null),
+                Arrays.asList("c", 2L, 6L, null)
+        );
+
+        engine.eval("result := left_join(ds1, ds2)[filter m2 > 9];");
+        assertThat(((Dataset) engine.getContext().getAttribute("result")).getDataAsList()).containsExactlyInAnyOrder(
+                Arrays.asList("b", 2L, 4L, 10L)
+        );
+
+        engine.eval("result := full_join(ds1, ds2)[filter m1 > 4];");
+        assertThat(((Dataset) engine.getContext().getAttribute("result")).getDataAsList()).containsExactlyInAnyOrder(
+                Arrays.asList("c", 1L, 5L, null),
+                Arrays.asList("c", 2L, 6L, null)
+        );
+
+        engine.eval("result := inner_join(ds1, ds2)[calc m3 := m1 + m2][filter id1 = \"a\" and m3 > 8];");
+        assertThat(((Dataset) engine.getContext().getAttribute("result")).getDataAsList()).containsExactlyInAnyOrder(
+                Arrays.asList("a", 2L, 2L, 8L, 10L)
+        );
+    }
+
+    @Test
+    public void testKeepAfterJoin() throws ScriptException {
+
+        engine.getContext().setAttribute("ds1", ds1, ScriptContext.ENGINE_SCOPE);
+        engine.getContext().setAttribute("ds2", ds2, ScriptContext.ENGINE_SCOPE);
+
+        engine.eval("result := left_join(ds1, ds2)[rename m2 to x][keep id1, x];");
+        var result = (Dataset) engine.getContext().getAttribute("result");
+        assertThat(result.getColumnNames()).containsExactly("id1", "x");
+        assertThat(result.getDataAsList()).containsExactlyInAnyOrder(
+                Arrays.asList("a", 7L),
+                Arrays.asList("a", 8L),
+                Arrays.asList("b", 9L),
+                Arrays.asList("b", 10L),
+                Arrays.asList("c", null),
+                Arrays.asList("c", null)
+        );
+
+        engine.eval("result := inner_join(ds1, ds2, ds1 as ds3)[drop ds3#m1, m2];");
+        result = (Dataset) engine.getContext().getAttribute("result");
+        assertThat(result.getColumnNames()).containsExactly("id1", "id2", "ds1#m1");
+        assertThat(result.getDataAsList()).containsExactlyInAnyOrder(
+                Arrays.asList("a", 1L, 1L),
+                Arrays.asList("a", 2L, 2L),
+                Arrays.asList("b", 1L, 3L),
+                Arrays.asList("b", 2L, 4L)
+        );
+    }
+
     @Test
     public void testLeftJoinWithDouble() throws ScriptException {
         InMemoryDataset dataset1 = new InMemoryDataset(
@@ -119,6 +183,32 @@ public class JoinFunctionsTest {
 
     }
 
+    @Test
+    public void testLeftJoinWithSmallerLeft() throws ScriptException {
+        InMemoryDataset small = new InMemoryDataset(
+                List.of(
+                        new Structured.Component("id1", String.class, Role.IDENTIFIER),
+                        new Structured.Component("id2", Long.class, Role.IDENTIFIER),
+                        new Structured.Component("m0", Long.class, Role.MEASURE)
+                ),
+                Arrays.asList("a", 1L, 0L),
+                Arrays.asList("e", 1L, 0L)
+        );
+
+        engine.getContext().setAttribute("small", small, ScriptContext.ENGINE_SCOPE);
+        engine.getContext().setAttribute("ds2", ds2, ScriptContext.ENGINE_SCOPE);
+        engine.eval("result := left_join(small, ds2);");
+
+        var result = (Dataset) engine.getContext().getAttribute("result");
+        assertThat(result.getColumnNames()).containsExactly(
+                "id1", "id2", "m0", "m2"
+        );
+        assertThat(result.getDataAsList()).containsExactlyInAnyOrder(
+                Arrays.asList("a", 1L, 0L, 7L),
+                Arrays.asList("e", 1L, 0L, null)
+        );
+    }
+
     @Test
     public void testInnerJoin() throws ScriptException {
 
@@ -212,6 +302,84 @@ public class JoinFunctionsTest {
 
     }
 
+    @Test
+    public void testFullJoinWithSmallerLeft() throws ScriptException {
+        ScriptContext context = engine.getContext();
+
+        var small = new InMemoryDataset(
+                List.of(
+                        new Structured.Component("id1", String.class, Role.IDENTIFIER),
+                        new Structured.Component("id2", Long.class, Role.IDENTIFIER),
+                        new Structured.Component("m0", Long.class, Role.MEASURE)
+                ),
+                Arrays.asList("a", 1L, 0L),
+                Arrays.asList("e", 1L, 0L)
+        );
+
+        context.getBindings(ScriptContext.ENGINE_SCOPE).put("small", small);
+        context.getBindings(ScriptContext.ENGINE_SCOPE).put("ds1", ds1);
+
+        engine.eval("result := full_join(small, ds1);");
+
+        var result = (Dataset) context.getAttribute("result");
+        assertThat(result.getColumnNames()).containsExactly("id1", "id2", "m0", "m1");
+        assertThat(result.getDataAsList()).containsExactlyInAnyOrder(
+                Arrays.asList("a", 1L, 0L, 1L),
+                Arrays.asList("a", 2L, null, 2L),
+                Arrays.asList("b", 1L, null, 3L),
+                Arrays.asList("b", 2L, null, 4L),
+                Arrays.asList("c", 1L, null, 5L),
+                Arrays.asList("c", 2L, null, 6L),
+                Arrays.asList("e", 1L, 0L, null)
+        );
+    }
+
+    @Test
+    public void testJoinSortedDatasets() throws ScriptException {
+        ScriptContext context = engine.getContext();
+        context.getBindings(ScriptContext.ENGINE_SCOPE).put("ds1", ds1.withSortOrder(List.of("id1", "id2")));
+        context.getBindings(ScriptContext.ENGINE_SCOPE).put("ds2", ds2.withSortOrder(List.of("id1", "id2")));
+
+        engine.eval("result := inner_join(ds1, ds2);");
+        var result = (Dataset) context.getAttribute("result");
+        assertThat(result.getSortOrder()).containsExactly("id1", "id2");
+        assertThat(result.getDataAsList()).containsExactly(
+                Arrays.asList("a", 1L, 1L, 7L),
+                Arrays.asList("a", 2L, 2L, 8L),
+                Arrays.asList("b", 1L, 3L, 9L),
+                Arrays.asList("b", 2L, 4L, 10L)
+        );
+
+        engine.eval("result := left_join(ds1, ds2);");
+        result = (Dataset) context.getAttribute("result");
+        assertThat(result.getDataAsList()).containsExactly(
+                Arrays.asList("a", 1L, 1L, 7L),
+                Arrays.asList("a", 2L, 2L, 8L),
+                Arrays.asList("b", 1L, 3L, 9L),
+                Arrays.asList("b", 2L, 4L, 10L),
+                Arrays.asList("c", 1L, 5L, null),
+                Arrays.asList("c", 2L, 6L, null)
+        );
+
+        engine.eval("result := full_join(ds1, ds2);");
+        result = (Dataset) context.getAttribute("result");
+        assertThat(result.getDataAsList()).containsExactly(
+                Arrays.asList("a", 1L, 1L, 7L),
+                Arrays.asList("a", 2L, 2L, 8L),
+                Arrays.asList("b", 1L, 3L, 9L),
+                Arrays.asList("b", 2L, 4L, 10L),
+                Arrays.asList("c", 1L, 5L, null),
+                Arrays.asList("c", 2L, 6L, null),
+                Arrays.asList("d", 3L, null, 11L),
+                Arrays.asList("d", 4L, null, 12L)
+        );
+
+        engine.eval("result := inner_join(ds1, ds2 using id1);");
+        result = (Dataset) context.getAttribute("result");
+        assertThat(result.getSortOrder()).containsExactly("id1");
+        assertThat(result.getDataAsList()).hasSize(8);
+    }
+
     @Test
     public void testCrossJoin() throws ScriptException {
 
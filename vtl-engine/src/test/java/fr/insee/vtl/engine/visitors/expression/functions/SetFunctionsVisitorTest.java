@@ -9,6 +9,8 @@ import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -165,4 +167,67 @@ public class SetFunctionsVisitorTest {
         );
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testUnionKeepsFirstDataPoints() throws ScriptException {
+        List<List<Object>> data1 = new ArrayList<>();
+        List<List<Object>> data2 = new ArrayList<>();
+        for (long i = 0; i < 5000; i++) {
+            data1.add(Arrays.asList("n" + i, i % 3 == 0 ? null : i % 3, 1L));
+            // The second dataset has its components in another order and shares half of the identifiers.
+            data2.add(Arrays.asList(2L, "n" + (i + 2500), (i + 2500) % 3 == 0 ? null : (i + 2500) % 3));
+        }
+        var dataset1 = new InMemoryDataset(data1, List.of(
+                new Component("name", String.class, Dataset.Role.IDENTIFIER),
+                new Component("quarter", Long.class, Dataset.Role.IDENTIFIER),
+                new Component("value", Long.class, Dataset.Role.MEASURE)
+        ));
+        var dataset2 = new InMemoryDataset(data2, List.of(
+                new Component("value", Long.class, Dataset.Role.MEASURE),
+                new Component("name", String.class, Dataset.Role.IDENTIFIER),
+                new Component("quarter", Long.class, Dataset.Role.IDENTIFIER)
+        ));
+
+        ScriptContext context = engine.getContext();
+        context.getBindings(ScriptContext.ENGINE_SCOPE).put("ds1", dataset1);
+        context.getBindings(ScriptContext.ENGINE_SCOPE).put("ds2", dataset2);
+
+        engine.eval("result := union(ds1, ds2);");
+        var result = (Dataset) engine.getContext().getAttribute("result");
+        assertThat(result.getDataStructure().keySet()).containsExactly("name", "quarter", "value");
+        var data = result.getDataAsList();
+        assertThat(data).hasSize(7500);
+        assertThat(data.get(0)).containsExactly("n0", null, 1L);
+        assertThat(data.get(4999)).containsExactly("n4999", 1L, 1L);
+        assertThat(data.get(5000)).containsExactly("n5000", 2L, 2L);
+        assertThat(data.get(7499)).containsExactly("n7499", 2L, 2L);
+    }
+
+    @Test
+    public void testUnionWithoutIdentifiers() throws ScriptException {
+        var dataset1 = new InMemoryDataset(
+                List.of(Arrays.asList(1L, "a"), Arrays.asList(2L, "b"), Arrays.asList(1L, "a")),
+                List.of(
+                        new Component("value", Long.class, Dataset.Role.MEASURE),
+                        new Component("label", String.class, Dataset.Role.MEASURE)
+                ));
+        var dataset2 = new InMemoryDataset(
+                List.of(Arrays.asList("b", 2L), Arrays.asList("c", null)),
+                List.of(
+                        new Component("label", String.class, Dataset.Role.MEASURE),
+                        new Component("value", Long.class, Dataset.Role.MEASURE)
+                ));
+
+        ScriptContext context = engine.getContext();
+        context.getBindings(ScriptContext.ENGINE_SCOPE).put("ds1", dataset1);
+        context.getBindings(ScriptContext.ENGINE_SCOPE).put("ds2", dataset2);
+
+        engine.eval("result := union(ds1, ds2);");
+        var result = (Dataset) engine.getContext().getAttribute("result");
+        assertThat(result.getDataAsList()).containsExactly(
+                Arrays.asList(1L, "a"),
+                Arrays.asList(2L, "b"),
+                Arrays.asList(null, "c")
+        );
+    }
+}
@@ -1,5 +1,9 @@
 package fr.insee.vtl.model;
 
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.function.BiConsumer;
 import java.util.function.BinaryOperator;
@@ -8,25 +12,48 @@ import java.util.function.Supplier;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
 
+/**
+ * The <code>AggregationExpression</code> class represents an aggregation of the data points of a group.
+ * <p>
+ * An aggregation is a {@link Collector} of data points. The aggregations created by the static methods of this
+ * class also provide an {@link Accumulator}, which aggregates all the groups at once from batches of rows, using
+ * primitive arrays. The aggregations are computed in a single pass and can be combined, so that the values of a
+ * group are not kept in memory, except for the exact median.
+ */
 public class AggregationExpression implements Collector<Structured.DataPoint, Object, Object>, TypedExpression {
 
     private final Collector<Structured.DataPoint, ?, ? extends Object> aggregation;
     private final Class<?> type;
+    private final Supplier<Accumulator> accumulator;
+    private final Operator operator;
+    private final ResolvableExpression expression;
 
     public AggregationExpression(Collector<Structured.DataPoint, ?, ? extends Object> aggregation, Class<?> type) {
+        this(aggregation, type, null, null, null);
+    }
+
+    private AggregationExpression(Collector<Structured.DataPoint, ?, ? extends Object> aggregation, Class<?> type,
+                                  Supplier<Accumulator> accumulator, Operator operator,
+                                  ResolvableExpression expression) {
         this.aggregation = aggregation;
         this.type = type;
+        this.accumulator = accumulator;
+        this.operator = operator;
+        this.expression = expression;
     }
 
     public static AggregationExpression count() {
-        return withType(Collectors.counting(), Long.class);
+        return new AggregationExpression(Collectors.counting(), Long.class, CountAccumulator::new,
+                Operator.COUNT, null);
     }
 
     public static AggregationExpression avg(ResolvableExpression expression) {
         if (Long.class.equals(expression.getType())) {
-            return withExpression(expression, Collectors.averagingLong(value -> (Long) value), Double.class);
+            return new AggregationExpression(mapping(expression, Collectors.averagingLong(value -> (Long) value)),
+                    Double.class, () -> new AverageAccumulator(expression), Operator.AVG, expression);
         } else if (Double.class.equals(expression.getType())) {
-            return withExpression(expression, Collectors.averagingDouble(value -> (Double) value), Double.class);
+            return new AggregationExpression(mapping(expression, Collectors.averagingDouble(value -> (Double) value)),
+                    Double.class, () -> new AverageAccumulator(expression), Operator.AVG, expression);
         } else {
             // TODO
             throw new Error();
@@ -36,27 +63,123 @@ public class AggregationExpression implements Collector<Structured.DataPoint, Ob
 
     public static AggregationExpression sum(ResolvableExpression expression) {
         if (Long.class.equals(expression.getType())) {
-            return withExpression(expression, Collectors.summingLong(value -> (Long) value), Long.class);
+            return new AggregationExpression(mapping(expression, Collectors.summingLong(value -> (Long) value)),
+                    Long.class, () -> new LongSumAccumulator(expression), Operator.SUM, expression);
         } else if (Double.class.equals(expression.getType())) {
-            return withExpression(expression, Collectors.summingDouble(value -> (Double) value), Double.class);
+            return new AggregationExpression(mapping(expression, Collectors.summingDouble(value -> (Double) value)),
+                    Double.class, () -> new DoubleSumAccumulator(expression), Operator.SUM, expression);
         } else {
             // TODO
             throw new Error();
         }
     }
 
+    public static AggregationExpression min(ResolvableExpression expression) {
+        return extremum(expression, false);
+    }
+
+    public static AggregationExpression max(ResolvableExpression expression) {
+        return extremum(expression, true);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static AggregationExpression extremum(ResolvableExpression expression, boolean max) {
+        Comparator<Object> comparator = (first, second) -> ((Comparable) first).compareTo(second);
+        Collector<Object, ?, Optional<Object>> extremum = max
+                ? Collectors.maxBy(comparator)
+                : Collectors.minBy(comparator);
+        var collector = Collectors.collectingAndThen(Collectors.filtering(Objects::nonNull, extremum),
+                value -> value.orElse(null));
+        Supplier<Accumulator> accumulator = null;
+        if (Long.class.equals(expression.getType())) {
+            accumulator = () -> new LongExtremumAccumulator(expression, max);
+        } else if (Double.class.equals(expression.getType())) {
+            accumulator = () -> new DoubleExtremumAccumulator(expression, max);
+        }
+        return new AggregationExpression(mapping(expression, collector), expression.getType(), accumulator,
+                max ? Operator.MAX : Operator.MIN, expression);
+    }
+
+    /**
+     * Returns an aggregation estimating the median of the values of an expression with a {@link QuantileSketch}.
+     * <p>
+     * The median is exact for the groups of at most {@value QuantileSketch#DEFAULT_CAPACITY} values.
+     */
+    public static AggregationExpression median(ResolvableExpression expression) {
+        return median(expression, false);
+    }
+
+    /**
+     * Returns an aggregation of the median of the values of an expression.
+     *
+     * @param expression The numeric expression to aggregate.
+     * @param exact      True to keep all the values of the groups and compute the exact median, false to
+     *                   estimate the median of large groups in bounded memory.
+     */
+    public static AggregationExpression median(ResolvableExpression expression, boolean exact) {
+        int capacity = exact ? Integer.MAX_VALUE : QuantileSketch.DEFAULT_CAPACITY;
+        var collector = Collector.<Object, QuantileSketch, Double>of(
+                () -> new QuantileSketch(capacity),
+                (sketch, value) -> {
+                    if (value != null) {
+                        sketch.add(((Number) value).doubleValue());
+                    }
+                },
+                QuantileSketch::merge,
+                QuantileSketch::median,
+                Collector.Characteristics.UNORDERED);
+        return new AggregationExpression(mapping(expression, collector), Double.class,
+                () -> new MedianAccumulator(expression, capacity),
+                exact ? Operator.EXACT_MEDIAN : Operator.MEDIAN, expression);
+    }
+
+    public static AggregationExpression varPop(ResolvableExpression expression) {
+        return variance(expression, Dispersion.VAR_POP);
+    }
+
+    public static AggregationExpression varSamp(ResolvableExpression expression) {
+        return variance(expression, Dispersion.VAR_SAMP);
+    }
+
+    public static AggregationExpression stddevPop(ResolvableExpression expression) {
+        return variance(expression, Dispersion.STDDEV_POP);
+    }
+
+    public static AggregationExpression stddevSamp(ResolvableExpression expression) {
+        return variance(expression, Dispersion.STDDEV_SAMP);
+    }
+
+    private static AggregationExpression variance(ResolvableExpression expression, Dispersion dispersion) {
+        var collector = Collector.<Object, Moments, Double>of(
+                Moments::new,
+                (moments, value) -> {
+                    if (value != null) {
+                        moments.add(((Number) value).doubleValue());
+                    }
+                },
+                Moments::combine,
+                moments -> dispersion.of(moments.count, moments.m2),
+                Collector.Characteristics.UNORDERED);
+        return new AggregationExpression(mapping(expression, collector), Double.class,
+                () -> new VarianceAccumulator(expression, dispersion), dispersion.operator, expression);
+    }
+
     public static AggregationExpression withType(Collector<Structured.DataPoint, ?, ?> collector, Class<?> type) {
         return new AggregationExpression(collector, type);
     }
 
     public static AggregationExpression withExpression(ResolvableExpression expression, Collector<Object, ?, ?> collector, Class<?> type) {
-        return new AggregationExpression(Collectors.mapping(new Function<Structured.DataPoint, Object>() {
+        return new AggregationExpression(mapping(expression, collector), type);
+    }
+
+    private static Collector<Structured.DataPoint, ?, ?> mapping(ResolvableExpression expression,
+                                                                  Collector<Object, ?, ?> collector) {
+        return Collectors.mapping(new Function<Structured.DataPoint, Object>() {
             @Override
             public Object apply(Structured.DataPoint dataPoint) {
-                // TODO: Use datapoint instead.
                 return expression.resolve(dataPoint);
             }
-        }, collector), type);
+        }, collector);
     }
 
     @Override
@@ -64,6 +187,33 @@ public class AggregationExpression implements Collector<Structured.DataPoint, Ob
         return type;
     }
 
+    /**
+     * Returns the operator of the aggregation.
+     *
+     * @return The operator, or null if the aggregation was created from a collector.
+     */
+    public Operator getOperator() {
+        return operator;
+    }
+
+    /**
+     * Returns the expression whose values are aggregated.
+     *
+     * @return The expression, or null if the aggregation was created from a collector or counts the data points.
+     */
+    public ResolvableExpression getExpression() {
+        return expression;
+    }
+
+    /**
+     * Returns a new accumulator of the aggregation, if the aggregation provides one.
+     *
+     * @return A new accumulator, or null if the aggregation is only a collector.
+     */
+    public Accumulator newAccumulator() {
+        return accumulator == null ? null : accumulator.get();
+    }
+
     @Override
     public Supplier<Object> supplier() {
         return (Supplier<Object>) aggregation.supplier();
@@ -88,4 +238,561 @@ public class AggregationExpression implements Collector<Structured.DataPoint, Ob
     public Set<Characteristics> characteristics() {
         return aggregation.characteristics();
     }
-}
\ No newline at end of file
+
+    /**
+     * The operators of the aggregations created by the static methods of this class.
+     */
+    public enum Operator {
+        COUNT, SUM, AVG, MIN, MAX, MEDIAN, EXACT_MEDIAN, VAR_POP, VAR_SAMP, STDDEV_POP, STDDEV_SAMP
+    }
+
+    /**
+     * The state of an aggregation for all the groups of a dataset, in arrays indexed by group.
+     * <p>
+     * The groups are numbered from 0, in the order they are found. The values of the aggregated expression are
+     * resolved for a whole batch of rows and accumulated without boxing. The values of a group are null until
+     * it contains a value that is not null.
+     */
+    public abstract static class Accumulator {
+
+        private int capacity = 0;
+
+        /**
+         * Accumulates the selected rows of a batch in their groups.
+         *
+         * @param batch      The rows to accumulate.
+         * @param groups     The group of each row of the batch.
+         * @param groupCount The number of groups, including the groups found in this batch.
+         */
+        public void accumulate(Batch batch, int[] groups, int groupCount) {
+            ensureCapacity(groupCount);
+            accumulate(batch, groups);
+        }
+
+        /**
+         * Adds the groups of another accumulator of the same aggregation to the groups of this accumulator.
+         *
+         * @param other      The accumulator to add, which is not modified.
+         * @param groups     The group of this accumulator matching each group of the other accumulator.
+         * @param groupCount The number of groups, including the groups added by the other accumulator.
+         */
+        public void combine(Accumulator other, int[] groups, int groupCount) {
+            ensureCapacity(groupCount);
+            combine(other, groups);
+        }
+
+        private void ensureCapacity(int groupCount) {
+            if (groupCount > capacity) {
+                capacity = Math.max(groupCount, capacity * 2);
+                grow(capacity);
+            }
+        }
+
+        /**
+         * Grows the arrays of the accumulator.
+         *
+         * @param capacity The new number of groups of the arrays.
+         */
+        protected abstract void grow(int capacity);
+
+        /**
+         * Accumulates the selected rows of a batch in their groups, the arrays being large enough.
+         *
+         * @param batch  The rows to accumulate.
+         * @param groups The group of each row of the batch.
+         */
+        protected abstract void accumulate(Batch batch, int[] groups);
+
+        /**
+         * Adds the groups of another accumulator to the groups of this accumulator, the arrays being large enough.
+         *
+         * @param other  The accumulator to add, of the same class.
+         * @param groups The group of this accumulator matching each group of the other accumulator.
+         */
+        protected abstract void combine(Accumulator other, int[] groups);
+
+        /**
+         * Returns the result of the aggregation for a group.
+         *
+         * @param group The number of the group.
+         * @return The result of the aggregation for the group.
+         */
+        public abstract Object get(int group);
+    }
+
+    /**
+     * Counts the data points of the groups.
+     */
+    private static final class CountAccumulator extends Accumulator {
+
+        private long[] counts = new long[0];
+
+        @Override
+        protected void grow(int capacity) {
+            counts = Arrays.copyOf(counts, capacity);
+        }
+
+        @Override
+        protected void accumulate(Batch batch, int[] groups) {
+            for (int i = 0; i < batch.size(); i++) {
+                if (batch.isSelected(i)) {
+                    counts[groups[i]]++;
+                }
+            }
+        }
+
+        @Override
+        protected void combine(Accumulator other, int[] groups) {
+            var otherCounts = ((CountAccumulator) other).counts;
+            for (int i = 0; i < groups.length; i++) {
+                counts[groups[i]] += otherCounts[i];
+            }
+        }
+
+        @Override
+        public Object get(int group) {
+            return counts[group];
+        }
+    }
+
+    /**
+     * Sums long values, ignoring null values.
+     */
+    private static final class LongSumAccumulator extends Accumulator {
+
+        private final ResolvableExpression expression;
+        private long[] sums = new long[0];
+        private long[] counts = new long[0];
+
+        private LongSumAccumulator(ResolvableExpression expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        protected void grow(int capacity) {
+            sums = Arrays.copyOf(sums, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+
+        @Override
+        protected void accumulate(Batch batch, int[] groups) {
+            var vector = (ColumnVector.LongVector) expression.resolve(batch);
+            var values = vector.getValues();
+            var nulls = vector.getNulls();
+            for (int i = 0; i < batch.size(); i++) {
+                if (batch.isSelected(i) && !nulls[i]) {
+                    sums[groups[i]] += values[i];
+                    counts[groups[i]]++;
+                }
+            }
+        }
+
+        @Override
+        protected void combine(Accumulator other, int[] groups) {
+            var sum = (LongSumAccumulator) other;
+            for (int i = 0; i < groups.length; i++) {
+                sums[groups[i]] += sum.sums[i];
+                counts[groups[i]] += sum.counts[i];
+            }
+        }
+
+        @Override
+        public Object get(int group) {
+            return counts[group] == 0 ? null : sums[group];
+        }
+    }
+
+    /**
+     * Sums double values, ignoring null values.
+     */
+    private static final class DoubleSumAccumulator extends Accumulator {
+
+        private final ResolvableExpression expression;
+        private double[] sums = new double[0];
+        private long[] counts = new long[0];
+
+        private DoubleSumAccumulator(ResolvableExpression expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        protected void grow(int capacity) {
+            sums = Arrays.copyOf(sums, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+
+        @Override
+        protected void accumulate(Batch batch, int[] groups) {
+            var vector = ColumnVector.DoubleVector.of(expression.resolve(batch));
+            var values = vector.getValues();
+            var nulls = vector.getNulls();
+            for (int i = 0; i < batch.size(); i++) {
+                if (batch.isSelected(i) && !nulls[i]) {
+                    sums[groups[i]] += values[i];
+                    counts[groups[i]]++;
+                }
+            }
+        }
+
+        @Override
+        protected void combine(Accumulator other, int[] groups) {
+            var sum = (DoubleSumAccumulator) other;
+            for (int i = 0; i < groups.length; i++) {
+                sums[groups[i]] += sum.sums[i];
+                counts[groups[i]] += sum.counts[i];
+            }
+        }
+
+        @Override
+        public Object get(int group) {
+            return counts[group] == 0 ? null : sums[group];
+        }
+    }
+
+    /**
+     * Averages long or double values, ignoring null values. Long values are summed as longs.
+     */
+    private static final class AverageAccumulator extends Accumulator {
+
+        private final ResolvableExpression expression;
+        private long[] longSums = new long[0];
+        private double[] doubleSums = new double[0];
+        private long[] counts = new long[0];
+
+        private AverageAccumulator(ResolvableExpression expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        protected void grow(int capacity) {
+            longSums = Arrays.copyOf(longSums, capacity);
+            doubleSums = Arrays.copyOf(doubleSums, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+
+        @Override
+        protected void accumulate(Batch batch, int[] groups) {
+            var vector = expression.resolve(batch);
+            var nulls = vector.getNulls();
+            if (vector instanceof ColumnVector.LongVector) {
+                var values = ((ColumnVector.LongVector) vector).getValues();
+                for (int i = 0; i < batch.size(); i++) {
+                    if (batch.isSelected(i) && !nulls[i]) {
+                        longSums[groups[i]] += values[i];
+                        counts[groups[i]]++;
+                    }
+                }
+            } else {
+                var values = ColumnVector.DoubleVector.of(vector).getValues();
+                for (int i = 0; i < batch.size(); i++) {
+                    if (batch.isSelected(i) && !nulls[i]) {
+                        doubleSums[groups[i]] += values[i];
+                        counts[groups[i]]++;
+                    }
+                }
+            }
+        }
+
+        @Override
+        protected void combine(Accumulator other, int[] groups) {
+            var average = (AverageAccumulator) other;
+            for (int i = 0; i < groups.length; i++) {
+                longSums[groups[i]] += average.longSums[i];
+                doubleSums[groups[i]] += average.doubleSums[i];
+                counts[groups[i]] += average.counts[i];
+            }
+        }
+
+        @Override
+        public Object get(int group) {
+            return counts[group] == 0 ? null : (longSums[group] + doubleSums[group]) / counts[group];
+        }
+    }
+
+    /**
+     * Keeps the minimum or the maximum of long values, ignoring null values.
+     */
+    private static final class LongExtremumAccumulator extends Accumulator {
+
+        private final ResolvableExpression expression;
+        private final boolean max;
+        private long[] extrema = new long[0];
+        private boolean[] found = new boolean[0];
+
+        private LongExtremumAccumulator(ResolvableExpression expression, boolean max) {
+            this.expression = expression;
+            this.max = max;
+        }
+
+        @Override
+        protected void grow(int capacity) {
+            extrema = Arrays.copyOf(extrema, capacity);
+            found = Arrays.copyOf(found, capacity);
+        }
+
+        @Override
+        protected void accumulate(Batch batch, int[] groups) {
+            var vector = (ColumnVector.LongVector) expression.resolve(batch);
+            var values = vector.getValues();
+            var nulls = vector.getNulls();
+            for (int i = 0; i < batch.size(); i++) {
+                if (batch.isSelected(i) && !nulls[i]) {
+                    add(groups[i], values[i]);
+                }
+            }
+        }
+
+        @Override
+        protected void combine(Accumulator other, int[] groups) {
+            var extremum = (LongExtremumAccumulator) other;
+            for (int i = 0; i < groups.length; i++) {
+                if (extremum.found[i]) {
+                    add(groups[i], extremum.extrema[i]);
+                }
+            }
+        }
+
+        private void add(int group, long value) {
+            if (!found[group] || (max ? value > extrema[group] : value < extrema[group])) {
+                extrema[group] = value;
+                found[group] = true;
+            }
+        }
+
+        @Override
+        public Object get(int group) {
+            return found[group] ? extrema[group] : null;
+        }
+    }
+
+    /**
+     * Keeps the minimum or the maximum of double values, ignoring null values. The values are compared as with
+     * {@link Double#compare(double, double)}.
+     */
+    private static final class DoubleExtremumAccumulator extends Accumulator {
+
+        private final ResolvableExpression expression;
+        private final boolean max;
+        private double[] extrema = new double[0];
+        private boolean[] found = new boolean[0];
+
+        private DoubleExtremumAccumulator(ResolvableExpression expression, boolean max) {
+            this.expression = expression;
+            this.max = max;
+        }
+
+        @Override
+        protected void grow(int capacity) {
+            extrema = Arrays.copyOf(extrema, capacity);
+            found = Arrays.copyOf(found, capacity);
+        }
+
+        @Override
+        protected void accumulate(Batch batch, int[] groups) {
+            var vector = ColumnVector.DoubleVector.of(expression.resolve(batch));
+            var values = vector.getValues();
+            var nulls = vector.getNulls();
+            for (int i = 0; i < batch.size(); i++) {
+                if (batch.isSelected(i) && !nulls[i]) {
+                    add(groups[i], values[i]);
+                }
+            }
+        }
+
+        @Override
+        protected void combine(Accumulator other, int[] groups) {
+            var extremum = (DoubleExtremumAccumulator) other;
+            for (int i = 0; i < groups.length; i++) {
+                if (extremum.found[i]) {
+                    add(groups[i], extremum.extrema[i]);
+                }
+            }
+        }
+
+        private void add(int group, double value) {
+            if (!found[group] || (max ? Double.compare(value, extrema[group]) > 0
+                    : Double.compare(value, extrema[group]) < 0)) {
+                extrema[group] = value;
+                found[group] = true;
+            }
+        }
+
+        @Override
+        public Object get(int group) {
+            return found[group] ? extrema[group] : null;
+        }
+    }
+
+    /**
+     * The medians of numeric values, ignoring null values, with a sketch per group.
+     */
+    private static final class MedianAccumulator extends Accumulator {
+
+        private final ResolvableExpression expression;
+        private final int capacity;
+        private QuantileSketch[] sketches = new QuantileSketch[0];
+
+        private MedianAccumulator(ResolvableExpression expression, int capacity) {
+            this.expression = expression;
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected void grow(int capacity) {
+            int previous = sketches.length;
+            sketches = Arrays.copyOf(sketches, capacity);
+            for (int group = previous; group < capacity; group++) {
+                sketches[group] = new QuantileSketch(this.capacity);
+            }
+        }
+
+        @Override
+        protected void accumulate(Batch batch, int[] groups) {
+            var vector = ColumnVector.DoubleVector.of(expression.resolve(batch));
+            var values = vector.getValues();
+            var nulls = vector.getNulls();
+            for (int i = 0; i < batch.size(); i++) {
+                if (batch.isSelected(i) && !nulls[i]) {
+                    sketches[groups[i]].add(values[i]);
+                }
+            }
+        }
+
+        @Override
+        protected void combine(Accumulator other, int[] groups) {
+            var median = (MedianAccumulator) other;
+            for (int i = 0; i < groups.length; i++) {
+                sketches[groups[i]].merge(median.sketches[i]);
+            }
+        }
+
+        @Override
+        public Object get(int group) {
+            return sketches[group].median();
+        }
+    }
+
+    /**
+     * The variances and standard deviations computed from the number of values, their mean and the sum of the
+     * squares of their differences to the mean.
+     */
+    private enum Dispersion {
+        VAR_POP(Operator.VAR_POP),
+        VAR_SAMP(Operator.VAR_SAMP),
+        STDDEV_POP(Operator.STDDEV_POP),
+        STDDEV_SAMP(Operator.STDDEV_SAMP);
+
+        private final Operator operator;
+
+        Dispersion(Operator operator) {
+            this.operator = operator;
+        }
+
+        /**
+         * Returns the dispersion of values, or null if there are too few values.
+         */
+        private Double of(long count, double m2) {
+            boolean sample = this == VAR_SAMP || this == STDDEV_SAMP;
+            if (count == 0 || sample && count == 1) {
+                return null;
+            }
+            double variance = m2 / (sample ? count - 1 : count);
+            return this == STDDEV_POP || this == STDDEV_SAMP ? Math.sqrt(variance) : variance;
+        }
+    }
+
+    /**
+     * The number of values, their mean and the sum of the squares of their differences to the mean, updated
+     * with the algorithm of Welford and combined with the formula of Chan et al.
+     */
+    private static final class Moments {
+
+        private long count;
+        private double mean;
+        private double m2;
+
+        private void add(double value) {
+            count++;
+            double delta = value - mean;
+            mean += delta / count;
+            m2 += delta * (value - mean);
+        }
+
+        private Moments combine(Moments other) {
+            add(other.count, other.mean, other.m2);
+            return this;
+        }
+
+        private void add(long otherCount, double otherMean, double otherM2) {
+            if (otherCount == 0) {
+                return;
+            }
+            long total = count + otherCount;
+            double delta = otherMean - mean;
+            mean += delta * otherCount / total;
+            m2 += otherM2 + delta * delta * count * otherCount / total;
+            count = total;
+        }
+    }
+
+    /**
+     * Computes the variances or the standard deviations of numeric values, ignoring null values.
+     */
+    private static final class VarianceAccumulator extends Accumulator {
+
+        private final ResolvableExpression expression;
+        private final Dispersion dispersion;
+        private long[] counts = new long[0];
+        private double[] means = new double[0];
+        private double[] m2s = new double[0];
+
+        private VarianceAccumulator(ResolvableExpression expression, Dispersion dispersion) {
+            this.expression = expression;
+            this.dispersion = dispersion;
+        }
+
+        @Override
+        protected void grow(int capacity) {
+            counts = Arrays.copyOf(counts, capacity);
+            means = Arrays.copyOf(means, capacity);
+            m2s = Arrays.copyOf(m2s, capacity);
+        }
+
+        @Override
+        protected void accumulate(Batch batch, int[] groups) {
+            var vector = ColumnVector.DoubleVector.of(expression.resolve(batch));
+            var values = vector.getValues();
+            var nulls = vector.getNulls();
+            for (int i = 0; i < batch.size(); i++) {
+                if (batch.isSelected(i) && !nulls[i]) {
+                    int group = groups[i];
+                    long count = ++counts[group];
+                    double delta = values[i] - means[group];
+                    means[group] += delta / count;
+                    m2s[group] += delta * (values[i] - means[group]);
+                }
+            }
+        }
+
+        @Override
+        protected void combine(Accumulator other, int[] groups) {
+            var variance = (VarianceAccumulator) other;
+            var moments = new Moments();
+            for (int i = 0; i < groups.length; i++) {
+                int group = groups[i];
+                moments.count = counts[group];
+                moments.mean = means[group];
+                moments.m2 = m2s[group];
+                moments.add(variance.counts[i], variance.means[i], variance.m2s[i]);
+                counts[group] = moments.count;
+                means[group] = moments.mean;
+                m2s[group] = moments.m2;
+            }
+        }
+
+        @Override
+        public Object get(int group) {
+            return dispersion.of(counts[group], m2s[group]);
+        }
+    }
+}
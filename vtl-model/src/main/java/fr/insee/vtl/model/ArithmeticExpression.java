@@ -0,0 +1,162 @@
+package fr.insee.vtl.model;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The <code>ArithmeticExpression</code> class represents an arithmetic operation on two numbers.
+ * <p>
+ * The result is a <code>Long</code> when both operands are of type <code>Long</code> and the operation is not a
+ * division, a <code>Double</code> otherwise. The result is null when one of the operands is null.
+ */
+public class ArithmeticExpression implements ResolvableExpression {
+
+    private final Operator operator;
+    private final ResolvableExpression left;
+    private final ResolvableExpression right;
+    private final Class<?> type;
+
+    /**
+     * Constructor taking the operator and the operands.
+     *
+     * @param operator The arithmetic operator.
+     * @param left     The left operand, a numeric expression.
+     * @param right    The right operand, a numeric expression.
+     */
+    public ArithmeticExpression(Operator operator, ResolvableExpression left, ResolvableExpression right) {
+        this.operator = Objects.requireNonNull(operator);
+        this.left = Objects.requireNonNull(left);
+        this.right = Objects.requireNonNull(right);
+        this.type = operator != Operator.DIVIDE && Long.class.equals(left.getType()) && Long.class.equals(right.getType())
+                ? Long.class
+                : Double.class;
+    }
+
+    /**
+     * Returns the operator of the operation.
+     *
+     * @return The operator of the operation.
+     */
+    public Operator getOperator() {
+        return operator;
+    }
+
+    /**
+     * Returns the left operand of the operation.
+     *
+     * @return The left operand of the operation.
+     */
+    public ResolvableExpression getLeft() {
+        return left;
+    }
+
+    /**
+     * Returns the right operand of the operation.
+     *
+     * @return The right operand of the operation.
+     */
+    public ResolvableExpression getRight() {
+        return right;
+    }
+
+    @Override
+    public Object resolve(Map<String, Object> context) {
+        return apply(left.resolve(context), right.resolve(context));
+    }
+
+    @Override
+    public Object resolve(Structured.IndexedRow row) {
+        return apply(left.resolve(row), right.resolve(row));
+    }
+
+    private Object apply(Object leftValue, Object rightValue) {
+        if (leftValue == null || rightValue == null) {
+            return null;
+        }
+        if (Long.class.equals(type)) {
+            long leftLong = (Long) leftValue;
+            long rightLong = (Long) rightValue;
+            switch (operator) {
+                case PLUS:
+                    return leftLong + rightLong;
+                case MINUS:
+                    return leftLong - rightLong;
+                default:
+                    return leftLong * rightLong;
+            }
+        }
+        double leftDouble = ((Number) leftValue).doubleValue();
+        double rightDouble = ((Number) rightValue).doubleValue();
+        switch (operator) {
+            case PLUS:
+                return leftDouble + rightDouble;
+            case MINUS:
+                return leftDouble - rightDouble;
+            case MULTIPLY:
+                return leftDouble * rightDouble;
+            default:
+                return leftDouble / rightDouble;
+        }
+    }
+
+    @Override
+    public ColumnVector resolve(Batch batch) {
+        var leftVector = left.resolve(batch);
+        var rightVector = right.resolve(batch);
+        int size = batch.size();
+        var nulls = new boolean[size];
+        var leftNulls = leftVector.getNulls();
+        var rightNulls = rightVector.getNulls();
+        for (int i = 0; i < size; i++) {
+            nulls[i] = leftNulls[i] | rightNulls[i];
+        }
+        if (Long.class.equals(type)) {
+            var a = ((ColumnVector.LongVector) leftVector).getValues();
+            var b = ((ColumnVector.LongVector) rightVector).getValues();
+            var values = new long[size];
+            switch (operator) {
+                case PLUS:
+                    for (int i = 0; i < size; i++) values[i] = a[i] + b[i];
+                    break;
+                case MINUS:
+                    for (int i = 0; i < size; i++) values[i] = a[i] - b[i];
+                    break;
+                default:
+                    for (int i = 0; i < size; i++) values[i] = a[i] * b[i];
+            }
+            return new ColumnVector.LongVector(values, nulls);
+        }
+        var a = ColumnVector.DoubleVector.of(leftVector).getValues();
+        var b = ColumnVector.DoubleVector.of(rightVector).getValues();
+        var values = new double[size];
+        switch (operator) {
+            case PLUS:
+                for (int i = 0; i < size; i++) values[i] = a[i] + b[i];
+                break;
+            case MINUS:
+                for (int i = 0; i < size; i++) values[i] = a[i] - b[i];
+                break;
+            case MULTIPLY:
+                for (int i = 0; i < size; i++) values[i] = a[i] * b[i];
+                break;
+            default:
+                for (int i = 0; i < size; i++) values[i] = a[i] / b[i];
+        }
+        return new ColumnVector.DoubleVector(values, nulls);
+    }
+
+    @Override
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * The arithmetic operators.
+     */
+    public enum Operator {
+        PLUS,
+        MINUS,
+        MULTIPLY,
+        DIVIDE
+    }
+}
@@ -0,0 +1,73 @@
+package fr.insee.vtl.model;
+
+/**
+ * The <code>Batch</code> interface represents a group of rows resolved at once by
+ * {@link ResolvableExpression#resolve(Batch)}.
+ * <p>
+ * The values of the components are read as {@link ColumnVector}s. Rows that are not selected may be skipped by
+ * the resolution: the values of an expression for these rows are undefined.
+ */
+public interface Batch {
+
+    /**
+     * Returns the number of rows of the batch.
+     *
+     * @return The number of rows of the batch.
+     */
+    int size();
+
+    /**
+     * Returns true if the value of a row is needed.
+     *
+     * @param index The position of the row in the batch.
+     * @return true if the row is selected.
+     */
+    boolean isSelected(int index);
+
+    /**
+     * Returns a row of the batch.
+     *
+     * @param index The position of the row in the batch.
+     * @return The row at this position.
+     */
+    Structured.IndexedRow getRow(int index);
+
+    /**
+     * Returns the values of a component for all the rows of the batch.
+     *
+     * @param name The name of the component.
+     * @return The values of the component.
+     */
+    ColumnVector getColumn(String name);
+
+    /**
+     * Returns a view of the batch where only the rows selected by both the batch and a mask are selected.
+     *
+     * @param selection A mask containing true for each row to keep selected.
+     * @return A view of the batch with a narrower selection.
+     */
+    default Batch select(boolean[] selection) {
+        var batch = this;
+        return new Batch() {
+            @Override
+            public int size() {
+                return batch.size();
+            }
+
+            @Override
+            public boolean isSelected(int index) {
+                return selection[index] && batch.isSelected(index);
+            }
+
+            @Override
+            public Structured.IndexedRow getRow(int index) {
+                return batch.getRow(index);
+            }
+
+            @Override
+            public ColumnVector getColumn(String name) {
+                return batch.getColumn(name);
+            }
+        };
+    }
+}
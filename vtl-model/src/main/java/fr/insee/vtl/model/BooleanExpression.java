@@ -8,12 +8,7 @@ import java.util.Map;
 public abstract class BooleanExpression implements ResolvableExpression {
 
     public static BooleanExpression of(Boolean value) {
-        return new BooleanExpression() {
-            @Override
-            public Boolean resolve(Map<String, Object> context) {
-                return value;
-            }
-        };
+        return new Constant(value);
     }
 
     @Override
@@ -32,4 +27,36 @@ public abstract class BooleanExpression implements ResolvableExpression {
             }
         };
     }
+
+    /**
+     * A constant of type <code>Boolean</code>.
+     */
+    private static final class Constant extends BooleanExpression implements ConstantExpression {
+
+        private final Boolean value;
+
+        private Constant(Boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        public Boolean getValue() {
+            return value;
+        }
+
+        @Override
+        public Boolean resolve(Map<String, Object> context) {
+            return value;
+        }
+
+        @Override
+        public Boolean resolve(Structured.IndexedRow row) {
+            return value;
+        }
+
+        @Override
+        public ColumnVector resolve(Batch batch) {
+            return ColumnVector.constant(Boolean.class, value, batch.size());
+        }
+    }
 }
@@ -0,0 +1,236 @@
+package fr.insee.vtl.model;
+
+import java.util.Arrays;
+
+/**
+ * The <code>ColumnVector</code> class represents the values of an expression for a {@link Batch} of rows.
+ * <p>
+ * Long, double and boolean values are stored in primitive arrays next to a null mask, so that operations on
+ * vectors run as loops over primitive values. Values of other types are stored as objects. The arrays are
+ * shared, not copied, and must not be modified.
+ */
+public abstract class ColumnVector {
+
+    private final boolean[] nulls;
+
+    private ColumnVector(boolean[] nulls) {
+        this.nulls = nulls;
+    }
+
+    /**
+     * Returns a vector of the given type containing the given values.
+     *
+     * @param type   The type of the values.
+     * @param values The values, possibly null.
+     * @return A vector containing the values.
+     */
+    public static ColumnVector of(Class<?> type, Object[] values) {
+        int size = values.length;
+        var nulls = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            nulls[i] = values[i] == null;
+        }
+        if (Long.class.equals(type)) {
+            var longs = new long[size];
+            for (int i = 0; i < size; i++) {
+                if (!nulls[i]) longs[i] = ((Number) values[i]).longValue();
+            }
+            return new LongVector(longs, nulls);
+        } else if (Double.class.equals(type)) {
+            var doubles = new double[size];
+            for (int i = 0; i < size; i++) {
+                if (!nulls[i]) doubles[i] = ((Number) values[i]).doubleValue();
+            }
+            return new DoubleVector(doubles, nulls);
+        } else if (Boolean.class.equals(type)) {
+            var booleans = new boolean[size];
+            for (int i = 0; i < size; i++) {
+                if (!nulls[i]) booleans[i] = (Boolean) values[i];
+            }
+            return new BooleanVector(booleans, nulls);
+        } else {
+            return new ObjectVector(values);
+        }
+    }
+
+    /**
+     * Returns a vector of the given type repeating the same value.
+     *
+     * @param type  The type of the value.
+     * @param value The value, possibly null.
+     * @param size  The size of the vector.
+     * @return A vector containing the value <code>size</code> times.
+     */
+    public static ColumnVector constant(Class<?> type, Object value, int size) {
+        var values = new Object[size];
+        Arrays.fill(values, value);
+        return of(type, values);
+    }
+
+    /**
+     * Returns the number of values of the vector.
+     *
+     * @return The number of values of the vector.
+     */
+    public int size() {
+        return nulls.length;
+    }
+
+    /**
+     * Returns true if a value is null.
+     *
+     * @param index The position of the value.
+     * @return true if the value is null.
+     */
+    public boolean isNull(int index) {
+        return nulls[index];
+    }
+
+    /**
+     * Returns the null mask of the vector.
+     *
+     * @return An array containing true for each null value.
+     */
+    public boolean[] getNulls() {
+        return nulls;
+    }
+
+    /**
+     * Returns a value as an object.
+     *
+     * @param index The position of the value.
+     * @return The value, or null.
+     */
+    public abstract Object get(int index);
+
+    /**
+     * A vector of <code>Long</code> values.
+     */
+    public static final class LongVector extends ColumnVector {
+
+        private final long[] values;
+
+        public LongVector(long[] values, boolean[] nulls) {
+            super(nulls);
+            this.values = values;
+        }
+
+        /**
+         * Returns the values of the vector. The values at the positions of nulls are undefined.
+         *
+         * @return The values of the vector.
+         */
+        public long[] getValues() {
+            return values;
+        }
+
+        @Override
+        public Object get(int index) {
+            return isNull(index) ? null : values[index];
+        }
+    }
+
+    /**
+     * A vector of <code>Double</code> values.
+     */
+    public static final class DoubleVector extends ColumnVector {
+
+        private final double[] values;
+
+        public DoubleVector(double[] values, boolean[] nulls) {
+            super(nulls);
+            this.values = values;
+        }
+
+        /**
+         * Returns the values of a vector of numbers as doubles.
+         *
+         * @param vector A vector of <code>Long</code>, <code>Double</code> or null values.
+         * @return The vector itself if it contains doubles, or a vector of the values converted to doubles.
+         */
+        public static DoubleVector of(ColumnVector vector) {
+            if (vector instanceof DoubleVector) {
+                return (DoubleVector) vector;
+            }
+            var values = new double[vector.size()];
+            if (vector instanceof LongVector) {
+                var longs = ((LongVector) vector).values;
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = longs[i];
+                }
+            } else {
+                for (int i = 0; i < values.length; i++) {
+                    if (!vector.isNull(i)) values[i] = ((Number) vector.get(i)).doubleValue();
+                }
+            }
+            return new DoubleVector(values, vector.getNulls());
+        }
+
+        /**
+         * Returns the values of the vector. The values at the positions of nulls are undefined.
+         *
+         * @return The values of the vector.
+         */
+        public double[] getValues() {
+            return values;
+        }
+
+        @Override
+        public Object get(int index) {
+            return isNull(index) ? null : values[index];
+        }
+    }
+
+    /**
+     * A vector of <code>Boolean</code> values.
+     */
+    public static final class BooleanVector extends ColumnVector {
+
+        private final boolean[] values;
+
+        public BooleanVector(boolean[] values, boolean[] nulls) {
+            super(nulls);
+            this.values = values;
+        }
+
+        /**
+         * Returns the values of the vector. The values at the positions of nulls are undefined.
+         *
+         * @return The values of the vector.
+         */
+        public boolean[] getValues() {
+            return values;
+        }
+
+        @Override
+        public Object get(int index) {
+            return isNull(index) ? null : values[index];
+        }
+    }
+
+    /**
+     * A vector of values of any other type.
+     */
+    public static final class ObjectVector extends ColumnVector {
+
+        private final Object[] values;
+
+        public ObjectVector(Object[] values) {
+            super(nullsOf(values));
+            this.values = values;
+        }
+
+        private static boolean[] nullsOf(Object[] values) {
+            var nulls = new boolean[values.length];
+            for (int i = 0; i < values.length; i++) {
+                nulls[i] = values[i] == null;
+            }
+            return nulls;
+        }
+
+        @Override
+        public Object get(int index) {
+            return values[index];
+        }
+    }
+}
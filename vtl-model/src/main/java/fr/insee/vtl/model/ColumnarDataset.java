@@ -0,0 +1,527 @@
+package fr.insee.vtl.model;
+
+import java.util.*;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of <code>Dataset</code> storing the values in memory, column by column.
+ * <p>
+ * Long and double values are stored in primitive arrays, boolean values in bitmaps and strings as codes in a
+ * dictionary of distinct values. Null values are tracked in a bitmap per column, allocated with the first null
+ * value. Components of other types are stored as objects.
+ * <p>
+ * The data points returned by {@link #getDataPoints()} and {@link #stream()} are created on demand from the
+ * columns and are not backed by them.
+ */
+public class ColumnarDataset implements Dataset {
+
+    private final DataStructure structure;
+    private final List<String> sortOrder;
+    private final Column[] columns;
+    private final int size;
+    private final List<DataPoint> dataPoints = new AbstractList<>() {
+        @Override
+        public DataPoint get(int index) {
+            Objects.checkIndex(index, size);
+            return dataPoint(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    };
+
+    /**
+     * Constructor copying the data points of a dataset.
+     *
+     * @param dataset The dataset to copy, with its structure and sort order.
+     */
+    public ColumnarDataset(Dataset dataset) {
+        this(dataset.getDataStructure(), dataset.getSortOrder(), dataset.stream());
+    }
+
+    /**
+     * Constructor taking initial data and a list of structure components.
+     *
+     * @param data       The initial data as a list of list of objects representing data contents.
+     * @param structures The list of structure components forming the structure of the dataset.
+     */
+    public ColumnarDataset(List<List<Object>> data, List<Component> structures) {
+        this(new DataStructure(structures), List.of(), data.stream());
+    }
+
+    private ColumnarDataset(DataStructure structure, List<String> sortOrder, Stream<? extends List<Object>> data) {
+        this.structure = Objects.requireNonNull(structure);
+        this.sortOrder = List.copyOf(sortOrder);
+        var builders = structure.values().stream()
+                .map(component -> ColumnBuilder.of(component.getType()))
+                .toArray(ColumnBuilder[]::new);
+        int row = 0;
+        for (Iterator<? extends List<Object>> it = data.iterator(); it.hasNext(); row++) {
+            var values = it.next();
+            for (int i = 0; i < builders.length; i++) {
+                builders[i].add(row, values.get(i));
+            }
+        }
+        this.size = row;
+        this.columns = Arrays.stream(builders).map(builder -> builder.build(size)).toArray(Column[]::new);
+    }
+
+    /**
+     * Returns the number of data points of the dataset.
+     *
+     * @return The number of data points of the dataset.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the column of a component.
+     *
+     * @param index The position of the component in the data structure.
+     * @return The values of the component.
+     */
+    public Column getColumn(int index) {
+        return columns[index];
+    }
+
+    /**
+     * Returns the column of a component.
+     *
+     * @param name The name of the component.
+     * @return The values of the component.
+     * @throws IllegalArgumentException if the component is not in the data structure.
+     */
+    public Column getColumn(String name) {
+        int index = structure.indexOfKey(name);
+        if (index == -1) {
+            throw new IllegalArgumentException("unknown column " + name);
+        }
+        return columns[index];
+    }
+
+    private DataPoint dataPoint(int row) {
+        var dataPoint = new DataPoint(structure);
+        for (int i = 0; i < columns.length; i++) {
+            dataPoint.set(i, columns[i].get(row));
+        }
+        return dataPoint;
+    }
+
+    @Override
+    public List<DataPoint> getDataPoints() {
+        return dataPoints;
+    }
+
+    @Override
+    public Stream<DataPoint> stream() {
+        return IntStream.range(0, size).mapToObj(this::dataPoint);
+    }
+
+    @Override
+    public List<String> getSortOrder() {
+        return sortOrder;
+    }
+
+    @Override
+    public DataStructure getDataStructure() {
+        return structure;
+    }
+
+    /**
+     * The values of a component, by row.
+     */
+    public abstract static class Column {
+
+        private final BitSet nulls;
+
+        private Column(BitSet nulls) {
+            this.nulls = nulls;
+        }
+
+        /**
+         * Returns true if the value of a row is null.
+         *
+         * @param row The position of the row.
+         * @return true if the value is null.
+         */
+        public boolean isNull(int row) {
+            return nulls != null && nulls.get(row);
+        }
+
+        /**
+         * Returns true if the column contains null values.
+         *
+         * @return true if the column contains null values.
+         */
+        public boolean hasNulls() {
+            return nulls != null;
+        }
+
+        /**
+         * Returns the value of a row as an object.
+         *
+         * @param row The position of the row.
+         * @return The value of the row, or null.
+         */
+        public Object get(int row) {
+            return isNull(row) ? null : getValue(row);
+        }
+
+        /**
+         * Returns the values of a range of rows as a vector.
+         *
+         * @param from The position of the first row, inclusive.
+         * @param to   The position of the last row, exclusive.
+         * @return The values of the rows.
+         */
+        public abstract ColumnVector getVector(int from, int to);
+
+        boolean[] getNulls(int from, int to) {
+            var mask = new boolean[to - from];
+            if (nulls != null) {
+                for (int row = nulls.nextSetBit(from); row >= 0 && row < to; row = nulls.nextSetBit(row + 1)) {
+                    mask[row - from] = true;
+                }
+            }
+            return mask;
+        }
+
+        abstract Object getValue(int row);
+    }
+
+    /**
+     * A column of <code>Long</code> values.
+     */
+    public static final class LongColumn extends Column {
+
+        private final long[] values;
+
+        private LongColumn(long[] values, BitSet nulls) {
+            super(nulls);
+            this.values = values;
+        }
+
+        /**
+         * Returns the value of a row. The result is undefined if the value is null.
+         *
+         * @param row The position of the row.
+         * @return The value of the row.
+         */
+        public long getLong(int row) {
+            return values[row];
+        }
+
+        @Override
+        public ColumnVector getVector(int from, int to) {
+            return new ColumnVector.LongVector(Arrays.copyOfRange(values, from, to), getNulls(from, to));
+        }
+
+        @Override
+        Object getValue(int row) {
+            return values[row];
+        }
+    }
+
+    /**
+     * A column of <code>Double</code> values.
+     */
+    public static final class DoubleColumn extends Column {
+
+        private final double[] values;
+
+        private DoubleColumn(double[] values, BitSet nulls) {
+            super(nulls);
+            this.values = values;
+        }
+
+        /**
+         * Returns the value of a row. The result is undefined if the value is null.
+         *
+         * @param row The position of the row.
+         * @return The value of the row.
+         */
+        public double getDouble(int row) {
+            return values[row];
+        }
+
+        @Override
+        public ColumnVector getVector(int from, int to) {
+            return new ColumnVector.DoubleVector(Arrays.copyOfRange(values, from, to), getNulls(from, to));
+        }
+
+        @Override
+        Object getValue(int row) {
+            return values[row];
+        }
+    }
+
+    /**
+     * A column of <code>Boolean</code> values.
+     */
+    public static final class BooleanColumn extends Column {
+
+        private final BitSet values;
+
+        private BooleanColumn(BitSet values, BitSet nulls) {
+            super(nulls);
+            this.values = values;
+        }
+
+        /**
+         * Returns the value of a row. The result is undefined if the value is null.
+         *
+         * @param row The position of the row.
+         * @return The value of the row.
+         */
+        public boolean getBoolean(int row) {
+            return values.get(row);
+        }
+
+        @Override
+        public ColumnVector getVector(int from, int to) {
+            var booleans = new boolean[to - from];
+            for (int row = values.nextSetBit(from); row >= 0 && row < to; row = values.nextSetBit(row + 1)) {
+                booleans[row - from] = true;
+            }
+            return new ColumnVector.BooleanVector(booleans, getNulls(from, to));
+        }
+
+        @Override
+        Object getValue(int row) {
+            return values.get(row);
+        }
+    }
+
+    /**
+     * A column of <code>String</code> values, stored as codes in a dictionary of distinct values.
+     */
+    public static final class StringColumn extends Column {
+
+        private final int[] codes;
+        private final String[] dictionary;
+
+        private StringColumn(int[] codes, String[] dictionary, BitSet nulls) {
+            super(nulls);
+            this.codes = codes;
+            this.dictionary = dictionary;
+        }
+
+        /**
+         * Returns the position of the value of a row in the dictionary. The result is undefined if the
+         * value is null.
+         *
+         * @param row The position of the row.
+         * @return The code of the value of the row.
+         */
+        public int getCode(int row) {
+            return codes[row];
+        }
+
+        /**
+         * Returns the distinct values of the column, by code.
+         *
+         * @return An unmodifiable list of the distinct values of the column.
+         */
+        public List<String> getDictionary() {
+            return List.of(dictionary);
+        }
+
+        @Override
+        public ColumnVector getVector(int from, int to) {
+            var strings = new Object[to - from];
+            for (int row = from; row < to; row++) {
+                strings[row - from] = get(row);
+            }
+            return new ColumnVector.ObjectVector(strings);
+        }
+
+        @Override
+        Object getValue(int row) {
+            return dictionary[codes[row]];
+        }
+    }
+
+    /**
+     * A column of values of any other type.
+     */
+    public static final class ObjectColumn extends Column {
+
+        private final Object[] values;
+
+        private ObjectColumn(Object[] values) {
+            super(null);
+            this.values = values;
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return values[row] == null;
+        }
+
+        @Override
+        public boolean hasNulls() {
+            return Arrays.stream(values).anyMatch(Objects::isNull);
+        }
+
+        @Override
+        public ColumnVector getVector(int from, int to) {
+            return new ColumnVector.ObjectVector(Arrays.copyOfRange(values, from, to));
+        }
+
+        @Override
+        Object getValue(int row) {
+            return values[row];
+        }
+    }
+
+    /**
+     * Accumulates the values of a column, row by row.
+     */
+    private abstract static class ColumnBuilder {
+
+        BitSet nulls;
+        int capacity = 16;
+
+        static ColumnBuilder of(Class<?> type) {
+            if (Long.class.equals(type)) {
+                return new LongColumnBuilder();
+            } else if (Double.class.equals(type)) {
+                return new DoubleColumnBuilder();
+            } else if (Boolean.class.equals(type)) {
+                return new BooleanColumnBuilder();
+            } else if (String.class.equals(type)) {
+                return new StringColumnBuilder();
+            } else {
+                return new ObjectColumnBuilder();
+            }
+        }
+
+        void add(int row, Object value) {
+            if (row == capacity) {
+                capacity = capacity * 2;
+                grow(capacity);
+            }
+            if (value == null) {
+                if (nulls == null) {
+                    nulls = new BitSet();
+                }
+                nulls.set(row);
+            } else {
+                set(row, value);
+            }
+        }
+
+        abstract void grow(int capacity);
+
+        abstract void set(int row, Object value);
+
+        abstract Column build(int size);
+    }
+
+    private static final class LongColumnBuilder extends ColumnBuilder {
+
+        private long[] values = new long[capacity];
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void set(int row, Object value) {
+            values[row] = ((Number) value).longValue();
+        }
+
+        @Override
+        Column build(int size) {
+            return new LongColumn(Arrays.copyOf(values, size), nulls);
+        }
+    }
+
+    private static final class DoubleColumnBuilder extends ColumnBuilder {
+
+        private double[] values = new double[capacity];
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void set(int row, Object value) {
+            values[row] = ((Number) value).doubleValue();
+        }
+
+        @Override
+        Column build(int size) {
+            return new DoubleColumn(Arrays.copyOf(values, size), nulls);
+        }
+    }
+
+    private static final class BooleanColumnBuilder extends ColumnBuilder {
+
+        private final BitSet values = new BitSet();
+
+        @Override
+        void grow(int capacity) {
+            // Bitsets grow on their own.
+        }
+
+        @Override
+        void set(int row, Object value) {
+            values.set(row, (Boolean) value);
+        }
+
+        @Override
+        Column build(int size) {
+            return new BooleanColumn(values, nulls);
+        }
+    }
+
+    private static final class StringColumnBuilder extends ColumnBuilder {
+
+        private final Map<String, Integer> codes = new HashMap<>();
+        private int[] values = new int[capacity];
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void set(int row, Object value) {
+            values[row] = codes.computeIfAbsent((String) value, key -> codes.size());
+        }
+
+        @Override
+        Column build(int size) {
+            var dictionary = new String[codes.size()];
+            codes.forEach((value, code) -> dictionary[code] = value);
+            return new StringColumn(Arrays.copyOf(values, size), dictionary, nulls);
+        }
+    }
+
+    private static final class ObjectColumnBuilder extends ColumnBuilder {
+
+        private Object[] values = new Object[capacity];
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void set(int row, Object value) {
+            values[row] = value;
+        }
+
+        @Override
+        Column build(int size) {
+            return new ObjectColumn(Arrays.copyOf(values, size));
+        }
+    }
+}
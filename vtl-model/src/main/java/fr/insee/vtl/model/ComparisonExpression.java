@@ -0,0 +1,165 @@
+package fr.insee.vtl.model;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The <code>ComparisonExpression</code> class represents the comparison of two values of the same comparable type.
+ * <p>
+ * The result is null when one of the operands is null.
+ */
+public class ComparisonExpression implements ResolvableExpression {
+
+    private final Operator operator;
+    private final ResolvableExpression left;
+    private final ResolvableExpression right;
+
+    /**
+     * Constructor taking the operator and the operands.
+     *
+     * @param operator The comparison operator.
+     * @param left     The left operand.
+     * @param right    The right operand, of the same type as the left operand.
+     */
+    public ComparisonExpression(Operator operator, ResolvableExpression left, ResolvableExpression right) {
+        this.operator = Objects.requireNonNull(operator);
+        this.left = Objects.requireNonNull(left);
+        this.right = Objects.requireNonNull(right);
+    }
+
+    /**
+     * Returns the operator of the comparison.
+     *
+     * @return The operator of the comparison.
+     */
+    public Operator getOperator() {
+        return operator;
+    }
+
+    /**
+     * Returns the left operand of the comparison.
+     *
+     * @return The left operand of the comparison.
+     */
+    public ResolvableExpression getLeft() {
+        return left;
+    }
+
+    /**
+     * Returns the right operand of the comparison.
+     *
+     * @return The right operand of the comparison.
+     */
+    public ResolvableExpression getRight() {
+        return right;
+    }
+
+    @Override
+    public Object resolve(Map<String, Object> context) {
+        return apply(left.resolve(context), right.resolve(context));
+    }
+
+    @Override
+    public Object resolve(Structured.IndexedRow row) {
+        return apply(left.resolve(row), right.resolve(row));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Boolean apply(Object leftValue, Object rightValue) {
+        if (leftValue == null || rightValue == null) {
+            return null;
+        }
+        return operator.test(((Comparable) leftValue).compareTo(rightValue));
+    }
+
+    @Override
+    public ColumnVector resolve(Batch batch) {
+        var leftVector = left.resolve(batch);
+        var rightVector = right.resolve(batch);
+        int size = batch.size();
+        var nulls = new boolean[size];
+        var leftNulls = leftVector.getNulls();
+        var rightNulls = rightVector.getNulls();
+        for (int i = 0; i < size; i++) {
+            nulls[i] = leftNulls[i] | rightNulls[i];
+        }
+        var values = new boolean[size];
+        if (leftVector instanceof ColumnVector.LongVector && rightVector instanceof ColumnVector.LongVector) {
+            var a = ((ColumnVector.LongVector) leftVector).getValues();
+            var b = ((ColumnVector.LongVector) rightVector).getValues();
+            switch (operator) {
+                case EQUAL:
+                    for (int i = 0; i < size; i++) values[i] = a[i] == b[i];
+                    break;
+                case NOT_EQUAL:
+                    for (int i = 0; i < size; i++) values[i] = a[i] != b[i];
+                    break;
+                case LESS_THAN:
+                    for (int i = 0; i < size; i++) values[i] = a[i] < b[i];
+                    break;
+                case GREATER_THAN:
+                    for (int i = 0; i < size; i++) values[i] = a[i] > b[i];
+                    break;
+                case LESS_THAN_OR_EQUAL:
+                    for (int i = 0; i < size; i++) values[i] = a[i] <= b[i];
+                    break;
+                default:
+                    for (int i = 0; i < size; i++) values[i] = a[i] >= b[i];
+            }
+        } else if (leftVector instanceof ColumnVector.DoubleVector && rightVector instanceof ColumnVector.DoubleVector) {
+            // Double.compare, like Double.compareTo, orders NaN and signed zeros.
+            var a = ((ColumnVector.DoubleVector) leftVector).getValues();
+            var b = ((ColumnVector.DoubleVector) rightVector).getValues();
+            for (int i = 0; i < size; i++) {
+                values[i] = operator.test(Double.compare(a[i], b[i]));
+            }
+        } else {
+            for (int i = 0; i < size; i++) {
+                if (!nulls[i] && batch.isSelected(i)) {
+                    values[i] = apply(leftVector.get(i), rightVector.get(i));
+                }
+            }
+        }
+        return new ColumnVector.BooleanVector(values, nulls);
+    }
+
+    @Override
+    public Class<?> getType() {
+        return Boolean.class;
+    }
+
+    /**
+     * The comparison operators.
+     */
+    public enum Operator {
+        EQUAL,
+        NOT_EQUAL,
+        LESS_THAN,
+        GREATER_THAN,
+        LESS_THAN_OR_EQUAL,
+        GREATER_THAN_OR_EQUAL;
+
+        /**
+         * Returns the result of the comparison from the result of a <code>compareTo</code> method.
+         *
+         * @param comparison A negative integer, zero, or a positive integer.
+         * @return The result of the comparison.
+         */
+        public boolean test(int comparison) {
+            switch (this) {
+                case EQUAL:
+                    return comparison == 0;
+                case NOT_EQUAL:
+                    return comparison != 0;
+                case LESS_THAN:
+                    return comparison < 0;
+                case GREATER_THAN:
+                    return comparison > 0;
+                case LESS_THAN_OR_EQUAL:
+                    return comparison <= 0;
+                default:
+                    return comparison >= 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package fr.insee.vtl.model;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The <code>ComponentExpression</code> class represents a reference to a component of a structured row.
+ * <p>
+ * The position of the component is computed once per {@link Structured.DataStructure} and kept with it, so
+ * rows sharing that structure are read by position rather than by name.
+ */
+public class ComponentExpression implements ResolvableExpression {
+
+    private final Structured.Component component;
+    private transient volatile Position position;
+
+    /**
+     * Constructor taking the referenced component.
+     *
+     * @param component The referenced component.
+     */
+    public ComponentExpression(Structured.Component component) {
+        this.component = Objects.requireNonNull(component);
+    }
+
+    /**
+     * Constructor taking the referenced component and the structure of the rows it will be resolved against.
+     *
+     * @param component The referenced component.
+     * @param structure The structure containing the component.
+     * @throws IllegalArgumentException if the component is not in the structure.
+     */
+    public ComponentExpression(Structured.Component component, Structured.DataStructure structure) {
+        this(component);
+        int index = structure.indexOfKey(component.getName());
+        if (index == -1) {
+            throw new IllegalArgumentException("unknown column " + component.getName());
+        }
+        this.position = new Position(structure, index);
+    }
+
+    /**
+     * Returns the referenced component.
+     *
+     * @return The referenced component.
+     */
+    public Structured.Component getComponent() {
+        return component;
+    }
+
+    /**
+     * Returns the name of the referenced component.
+     *
+     * @return The name of the referenced component.
+     */
+    public String getName() {
+        return component.getName();
+    }
+
+    @Override
+    public Object resolve(Map<String, Object> context) {
+        if (context instanceof Structured.IndexedRow) {
+            return resolve((Structured.IndexedRow) context);
+        }
+        return context.get(component.getName());
+    }
+
+    @Override
+    public Object resolve(Structured.IndexedRow row) {
+        var structure = row.getDataStructure();
+        var position = this.position;
+        if (position == null || position.structure != structure) {
+            position = new Position(structure, structure.indexOfKey(component.getName()));
+            this.position = position;
+        }
+        return row.get(position.index);
+    }
+
+    @Override
+    public ColumnVector resolve(Batch batch) {
+        return batch.getColumn(component.getName());
+    }
+
+    @Override
+    public Class<?> getType() {
+        return component.getType();
+    }
+
+    /**
+     * The position of the component in a structure.
+     */
+    private static final class Position {
+
+        private final Structured.DataStructure structure;
+        private final int index;
+
+        private Position(Structured.DataStructure structure, int index) {
+            this.structure = structure;
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package fr.insee.vtl.model;
+
+/**
+ * The <code>ConstantExpression</code> interface represents an expression that resolves to the same value in any
+ * context, so that processing engines can use the value directly.
+ */
+public interface ConstantExpression extends ResolvableExpression {
+
+    /**
+     * Returns the value of the expression.
+     *
+     * @return The value of the expression, which may be null.
+     */
+    Object getValue();
+}
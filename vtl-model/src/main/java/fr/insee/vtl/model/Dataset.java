@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Structured dataset
@@ -22,6 +23,30 @@ public interface Dataset extends Structured {
      */
     List<DataPoint> getDataPoints();
 
+    /**
+     * Returns the data points of the dataset as a sequential stream.
+     * <p>
+     * Implementations that compute their data points on demand pull them one at a time
+     * instead of creating the list returned by {@link #getDataPoints()}.
+     *
+     * @return The data points of the dataset as a stream.
+     */
+    default Stream<DataPoint> stream() {
+        return getDataPoints().stream();
+    }
+
+    /**
+     * Returns the names of the components the data points are sorted by.
+     * <p>
+     * The data points are sorted in ascending natural order of the first component, then of the second one
+     * and so on, with null values first. An empty list means that the order of the data points is unknown.
+     *
+     * @return The names of the components the data points are sorted by.
+     */
+    default List<String> getSortOrder() {
+        return List.of();
+    }
+
     default List<List<Object>> getDataAsList() {
         return getDataPoints().stream().map(objects -> (List<Object>) new ArrayList<>(objects)).collect(Collectors.toList());
     }
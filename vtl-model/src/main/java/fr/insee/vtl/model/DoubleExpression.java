@@ -23,12 +23,7 @@ public abstract class DoubleExpression extends NumberExpression {
     }
 
     public static DoubleExpression of(Double value) {
-        return new DoubleExpression() {
-            @Override
-            public Double resolve(Map<String, Object> context) {
-                return value;
-            }
-        };
+        return new Constant(value);
     }
 
     @Override
@@ -38,4 +33,36 @@ public abstract class DoubleExpression extends NumberExpression {
     public Class<Double> getType() {
         return Double.class;
     }
+
+    /**
+     * A constant of type <code>Double</code>.
+     */
+    private static final class Constant extends DoubleExpression implements ConstantExpression {
+
+        private final Double value;
+
+        private Constant(Double value) {
+            this.value = value;
+        }
+
+        @Override
+        public Double getValue() {
+            return value;
+        }
+
+        @Override
+        public Double resolve(Map<String, Object> context) {
+            return value;
+        }
+
+        @Override
+        public Double resolve(Structured.IndexedRow row) {
+            return value;
+        }
+
+        @Override
+        public ColumnVector resolve(Batch batch) {
+            return ColumnVector.constant(Double.class, value, batch.size());
+        }
+    }
 }
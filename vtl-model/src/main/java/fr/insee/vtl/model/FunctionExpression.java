@@ -0,0 +1,126 @@
+package fr.insee.vtl.model;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * The <code>FunctionExpression</code> class represents a string or numeric function of one operand.
+ * <p>
+ * The result is null when the operand is null.
+ */
+public class FunctionExpression implements ResolvableExpression {
+
+    private static final Pattern LTRIM = Pattern.compile("^\\s+");
+    private static final Pattern RTRIM = Pattern.compile("\\s+$");
+
+    private final Function function;
+    private final ResolvableExpression operand;
+
+    /**
+     * Constructor taking the function and its operand.
+     *
+     * @param function The function.
+     * @param operand  The operand, a string expression for the string functions and a numeric expression for the
+     *                 numeric functions.
+     */
+    public FunctionExpression(Function function, ResolvableExpression operand) {
+        this.function = Objects.requireNonNull(function);
+        this.operand = Objects.requireNonNull(operand);
+    }
+
+    /**
+     * Returns the function of the expression.
+     *
+     * @return The function of the expression.
+     */
+    public Function getFunction() {
+        return function;
+    }
+
+    /**
+     * Returns the operand of the function.
+     *
+     * @return The operand of the function.
+     */
+    public ResolvableExpression getOperand() {
+        return operand;
+    }
+
+    @Override
+    public Object resolve(Map<String, Object> context) {
+        return apply(operand.resolve(context));
+    }
+
+    @Override
+    public Object resolve(Structured.IndexedRow row) {
+        return apply(operand.resolve(row));
+    }
+
+    private Object apply(Object value) {
+        if (value == null) {
+            return null;
+        }
+        switch (function) {
+            case TRIM:
+                return ((String) value).trim();
+            case LTRIM:
+                return LTRIM.matcher((String) value).replaceAll("");
+            case RTRIM:
+                return RTRIM.matcher((String) value).replaceAll("");
+            case UPPER:
+                return ((String) value).toUpperCase();
+            case LOWER:
+                return ((String) value).toLowerCase();
+            case LENGTH:
+                return (long) ((String) value).length();
+            case CEIL:
+                return (long) Math.ceil(((Number) value).doubleValue());
+            case FLOOR:
+                return (long) Math.floor(((Number) value).doubleValue());
+            case ABS:
+                return Math.abs(((Number) value).doubleValue());
+            case EXP:
+                return Math.exp(((Number) value).doubleValue());
+            default:
+                return Math.log(((Number) value).doubleValue());
+        }
+    }
+
+    @Override
+    public Class<?> getType() {
+        return function.getType();
+    }
+
+    /**
+     * The functions of one operand.
+     */
+    public enum Function {
+        TRIM(String.class),
+        LTRIM(String.class),
+        RTRIM(String.class),
+        UPPER(String.class),
+        LOWER(String.class),
+        LENGTH(Long.class),
+        CEIL(Long.class),
+        FLOOR(Long.class),
+        ABS(Double.class),
+        EXP(Double.class),
+        LN(Double.class);
+
+        private final Class<?> type;
+
+        Function(Class<?> type) {
+            this.type = type;
+        }
+
+        /**
+         * Returns the type of the results of the function.
+         *
+         * @return The type of the results of the function.
+         */
+        public Class<?> getType() {
+            return type;
+        }
+    }
+}
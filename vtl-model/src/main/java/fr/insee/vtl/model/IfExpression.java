@@ -0,0 +1,81 @@
+package fr.insee.vtl.model;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The <code>IfExpression</code> class represents an if-then-else expression.
+ * <p>
+ * Only the selected branch is resolved. The else branch is selected when the condition is false or null.
+ */
+public class IfExpression implements ResolvableExpression {
+
+    private final Class<?> type;
+    private final ResolvableExpression condition;
+    private final ResolvableExpression thenExpression;
+    private final ResolvableExpression elseExpression;
+
+    /**
+     * Constructor taking the type, the condition and the branches.
+     *
+     * @param type           The type of the branches.
+     * @param condition      The condition, a boolean expression.
+     * @param thenExpression The expression resolved when the condition is true.
+     * @param elseExpression The expression resolved when the condition is false or null.
+     */
+    public IfExpression(Class<?> type, ResolvableExpression condition, ResolvableExpression thenExpression,
+                        ResolvableExpression elseExpression) {
+        this.type = Objects.requireNonNull(type);
+        this.condition = Objects.requireNonNull(condition);
+        this.thenExpression = Objects.requireNonNull(thenExpression);
+        this.elseExpression = Objects.requireNonNull(elseExpression);
+    }
+
+    /**
+     * Returns the condition of the expression.
+     *
+     * @return The condition of the expression.
+     */
+    public ResolvableExpression getCondition() {
+        return condition;
+    }
+
+    /**
+     * Returns the expression resolved when the condition is true.
+     *
+     * @return The then branch of the expression.
+     */
+    public ResolvableExpression getThen() {
+        return thenExpression;
+    }
+
+    /**
+     * Returns the expression resolved when the condition is false or null.
+     *
+     * @return The else branch of the expression.
+     */
+    public ResolvableExpression getElse() {
+        return elseExpression;
+    }
+
+    @Override
+    public Object resolve(Map<String, Object> context) {
+        Boolean conditionalValue = (Boolean) condition.resolve(context);
+        return Boolean.TRUE.equals(conditionalValue) ?
+                type.cast(thenExpression.resolve(context)) :
+                type.cast(elseExpression.resolve(context));
+    }
+
+    @Override
+    public Object resolve(Structured.IndexedRow row) {
+        Boolean conditionalValue = (Boolean) condition.resolve(row);
+        return Boolean.TRUE.equals(conditionalValue) ?
+                type.cast(thenExpression.resolve(row)) :
+                type.cast(elseExpression.resolve(row));
+    }
+
+    @Override
+    public Class<?> getType() {
+        return type;
+    }
+}
@@ -12,10 +12,29 @@ public class InMemoryDataset implements Dataset {
 
     private final List<DataPoint> data;
     private final DataStructure structure;
+    private final List<String> sortOrder;
 
     public InMemoryDataset(List<DataPoint> data, Map<String, Component> structure) {
         this.structure = new DataStructure(structure.values());
         this.data = data;
+        this.sortOrder = List.of();
+    }
+
+    /**
+     * Constructor taking data points already sorted by some of their components.
+     *
+     * @param data      The data points, sorted as described in {@link Dataset#getSortOrder()}.
+     * @param structure The structure of the data points.
+     * @param sortOrder The names of the components the data points are sorted by.
+     * @throws IllegalArgumentException if a name of the sort order is not in the structure.
+     */
+    public InMemoryDataset(List<DataPoint> data, DataStructure structure, List<String> sortOrder) {
+        if (!Objects.requireNonNull(structure).keySet().containsAll(sortOrder)) {
+            throw new IllegalArgumentException("sort order " + sortOrder + " not in the structure");
+        }
+        this.structure = structure;
+        this.data = Objects.requireNonNull(data);
+        this.sortOrder = List.copyOf(sortOrder);
     }
 
     /**
@@ -31,6 +50,7 @@ public class InMemoryDataset implements Dataset {
         }
         this.structure = new DataStructure(types, roles);
         this.data = convert(data);
+        this.sortOrder = List.of();
     }
 
     /**
@@ -52,11 +72,13 @@ public class InMemoryDataset implements Dataset {
     public InMemoryDataset(List<List<Object>> data, List<Component> structures) {
         this.structure = new DataStructure(structures);
         this.data = convertList(data);
+        this.sortOrder = List.of();
     }
 
     public InMemoryDataset(List<List<Object>> data, DataStructure structures) {
         this.structure = structures;
         this.data = convertList(data);
+        this.sortOrder = List.of();
     }
 
     private List<DataPoint> convert(List<Map<String, Object>> data) {
@@ -71,11 +93,28 @@ public class InMemoryDataset implements Dataset {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Returns a dataset with the same data points, declared as sorted by the given components.
+     * <p>
+     * The data points are neither sorted nor checked; the caller guarantees their order.
+     *
+     * @param sortOrder The names of the components the data points are sorted by.
+     * @return A dataset sharing the data points of this one, with the given sort order.
+     */
+    public InMemoryDataset withSortOrder(List<String> sortOrder) {
+        return new InMemoryDataset(data, structure, sortOrder);
+    }
+
     @Override
     public List<DataPoint> getDataPoints() {
         return data;
     }
 
+    @Override
+    public List<String> getSortOrder() {
+        return sortOrder;
+    }
+
     @Override
     public DataStructure getDataStructure() {
         return structure;
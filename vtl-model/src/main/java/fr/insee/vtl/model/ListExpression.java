@@ -17,6 +17,11 @@ public abstract class ListExpression implements ResolvableExpression, TypedConta
                 return list;
             }
 
+            @Override
+            public List<?> resolve(Structured.IndexedRow row) {
+                return list;
+            }
+
             @Override
             public Class<?> containedType() {
                 return containedType;
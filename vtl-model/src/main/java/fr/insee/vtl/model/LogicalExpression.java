@@ -0,0 +1,155 @@
+package fr.insee.vtl.model;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The <code>LogicalExpression</code> class represents a boolean operation on two booleans, with the three-valued
+ * logic of VTL.
+ * <p>
+ * <code>and</code> is false as soon as one operand is false and <code>or</code> is true as soon as one operand is
+ * true, even if the other operand is null. The right operand of these operators is only resolved when the left
+ * operand does not determine the result. <code>xor</code> is null when one of the operands is null.
+ */
+public class LogicalExpression implements ResolvableExpression {
+
+    private final Operator operator;
+    private final ResolvableExpression left;
+    private final ResolvableExpression right;
+
+    /**
+     * Constructor taking the operator and the operands.
+     *
+     * @param operator The boolean operator.
+     * @param left     The left operand, a boolean expression.
+     * @param right    The right operand, a boolean expression.
+     */
+    public LogicalExpression(Operator operator, ResolvableExpression left, ResolvableExpression right) {
+        this.operator = Objects.requireNonNull(operator);
+        this.left = Objects.requireNonNull(left);
+        this.right = Objects.requireNonNull(right);
+    }
+
+    /**
+     * Returns the operator of the operation.
+     *
+     * @return The operator of the operation.
+     */
+    public Operator getOperator() {
+        return operator;
+    }
+
+    /**
+     * Returns the left operand of the operation.
+     *
+     * @return The left operand of the operation.
+     */
+    public ResolvableExpression getLeft() {
+        return left;
+    }
+
+    /**
+     * Returns the right operand of the operation.
+     *
+     * @return The right operand of the operation.
+     */
+    public ResolvableExpression getRight() {
+        return right;
+    }
+
+    @Override
+    public Object resolve(Map<String, Object> context) {
+        var leftValue = (Boolean) left.resolve(context);
+        if (operator.isDeterminedBy(leftValue)) {
+            return leftValue;
+        }
+        return apply(leftValue, (Boolean) right.resolve(context));
+    }
+
+    @Override
+    public Object resolve(Structured.IndexedRow row) {
+        var leftValue = (Boolean) left.resolve(row);
+        if (operator.isDeterminedBy(leftValue)) {
+            return leftValue;
+        }
+        return apply(leftValue, (Boolean) right.resolve(row));
+    }
+
+    private Boolean apply(Boolean leftValue, Boolean rightValue) {
+        switch (operator) {
+            case AND:
+                if (rightValue != null && !rightValue) return false;
+                if (leftValue == null || rightValue == null) return null;
+                return true;
+            case OR:
+                if (rightValue != null && rightValue) return true;
+                if (leftValue == null || rightValue == null) return null;
+                return false;
+            default:
+                if (leftValue == null || rightValue == null) return null;
+                return leftValue ^ rightValue;
+        }
+    }
+
+    @Override
+    public ColumnVector resolve(Batch batch) {
+        var leftVector = (ColumnVector.BooleanVector) left.resolve(batch);
+        int size = batch.size();
+        var a = leftVector.getValues();
+        var leftNulls = leftVector.getNulls();
+
+        // Only the rows not determined by the left operand need the right operand.
+        var pending = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            pending[i] = operator == Operator.XOR || leftNulls[i] || a[i] != (operator == Operator.OR);
+        }
+        var rightVector = (ColumnVector.BooleanVector) right.resolve(batch.select(pending));
+        var b = rightVector.getValues();
+        var rightNulls = rightVector.getNulls();
+
+        var values = new boolean[size];
+        var nulls = new boolean[size];
+        switch (operator) {
+            case AND:
+                for (int i = 0; i < size; i++) {
+                    boolean leftFalse = !leftNulls[i] & !a[i];
+                    boolean rightFalse = pending[i] & !rightNulls[i] & !b[i];
+                    values[i] = !leftFalse & !rightFalse;
+                    nulls[i] = !leftFalse & !rightFalse & (leftNulls[i] | rightNulls[i]);
+                }
+                break;
+            case OR:
+                for (int i = 0; i < size; i++) {
+                    boolean leftTrue = !leftNulls[i] & a[i];
+                    boolean rightTrue = pending[i] & !rightNulls[i] & b[i];
+                    values[i] = leftTrue | rightTrue;
+                    nulls[i] = !leftTrue & !rightTrue & (leftNulls[i] | rightNulls[i]);
+                }
+                break;
+            default:
+                for (int i = 0; i < size; i++) {
+                    values[i] = a[i] ^ b[i];
+                    nulls[i] = leftNulls[i] | rightNulls[i];
+                }
+        }
+        return new ColumnVector.BooleanVector(values, nulls);
+    }
+
+    @Override
+    public Class<?> getType() {
+        return Boolean.class;
+    }
+
+    /**
+     * The boolean operators.
+     */
+    public enum Operator {
+        AND,
+        OR,
+        XOR;
+
+        private boolean isDeterminedBy(Boolean leftValue) {
+            return leftValue != null && this != XOR && leftValue == (this == OR);
+        }
+    }
+}
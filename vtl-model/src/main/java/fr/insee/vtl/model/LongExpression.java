@@ -8,12 +8,7 @@ import java.util.Map;
 public abstract class LongExpression extends NumberExpression {
 
     public static LongExpression of(Long value) {
-        return new LongExpression() {
-            @Override
-            public Long resolve(Map<String, Object> context) {
-                return value;
-            }
-        };
+        return new Constant(value);
     }
 
     @Override
@@ -38,4 +33,36 @@ public abstract class LongExpression extends NumberExpression {
             }
         };
     }
-}
\ No newline at end of file
+
+    /**
+     * A constant of type <code>Long</code>.
+     */
+    private static final class Constant extends LongExpression implements ConstantExpression {
+
+        private final Long value;
+
+        private Constant(Long value) {
+            this.value = value;
+        }
+
+        @Override
+        public Long getValue() {
+            return value;
+        }
+
+        @Override
+        public Long resolve(Map<String, Object> context) {
+            return value;
+        }
+
+        @Override
+        public Long resolve(Structured.IndexedRow row) {
+            return value;
+        }
+
+        @Override
+        public ColumnVector resolve(Batch batch) {
+            return ColumnVector.constant(Long.class, value, batch.size());
+        }
+    }
+}
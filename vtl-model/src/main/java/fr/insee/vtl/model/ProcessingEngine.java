@@ -2,6 +2,7 @@ package fr.insee.vtl.model;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 
 import static fr.insee.vtl.model.Structured.*;
@@ -33,6 +34,22 @@ public interface ProcessingEngine {
      */
     DatasetExpression executeFilter(DatasetExpression expression, ResolvableExpression filter);
 
+    /**
+     * Execute a filter transformations on the dataset expression, knowing the components the filter reads.
+     * <p>
+     * The components let the engine apply the filter earlier, for instance on one side of a join. By default,
+     * the filter is applied as with {@link #executeFilter(DatasetExpression, ResolvableExpression)}.
+     *
+     * @param expression the dataset to apply the filter transformations on
+     * @param filter     a filter expression
+     * @param components the names of the components the filter reads
+     * @return the result of the filter transformation
+     */
+    default DatasetExpression executeFilter(DatasetExpression expression, ResolvableExpression filter,
+                                            Set<String> components) {
+        return executeFilter(expression, filter);
+    }
+
     /**
      * Execute a rename transformations on the dataset expression.
      *
@@ -0,0 +1,126 @@
+package fr.insee.vtl.model;
+
+import java.util.Arrays;
+
+/**
+ * A mergeable sketch of double values that estimates their quantiles in bounded memory.
+ * <p>
+ * The values are kept in levels of at most <code>capacity</code> values, a value of level <code>i</code> standing
+ * for <code>2^i</code> values. When a level exceeds its capacity, its values are sorted and one value out of two is moved to
+ * the next level, alternating between the even and the odd positions. The quantiles are exact as long as no level
+ * was compacted, so a sketch with an unbounded capacity keeps all the values and computes exact quantiles.
+ */
+final class QuantileSketch {
+
+    static final int DEFAULT_CAPACITY = 256;
+
+    private final int capacity;
+    private double[][] levels = new double[1][];
+    private int[] sizes = new int[1];
+    private long count = 0;
+    private boolean odd = false;
+
+    QuantileSketch(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("the capacity of a sketch must be at least 2");
+        }
+        this.capacity = capacity;
+        levels[0] = new double[Math.min(capacity, 16)];
+    }
+
+    void add(double value) {
+        append(0, value);
+        count++;
+        compact(0);
+    }
+
+    /**
+     * Adds the values of another sketch to this sketch.
+     */
+    QuantileSketch merge(QuantileSketch other) {
+        for (int level = 0; level < other.levels.length; level++) {
+            for (int i = 0; i < other.sizes[level]; i++) {
+                append(level, other.levels[level][i]);
+            }
+        }
+        count += other.count;
+        for (int level = 0; level < levels.length; level++) {
+            compact(level);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the median of the values, the mean of the two middle values if the number of values is even.
+     *
+     * @return The median, or null if the sketch has no value.
+     */
+    Double median() {
+        if (count == 0) {
+            return null;
+        }
+        int size = 0;
+        for (int level = 0; level < levels.length; level++) {
+            size += sizes[level];
+        }
+        // Sort the values with their weights, the values of the same level being already sorted.
+        var values = new double[size];
+        var weights = new long[size];
+        var order = new Integer[size];
+        int index = 0;
+        for (int level = 0; level < levels.length; level++) {
+            for (int i = 0; i < sizes[level]; i++) {
+                values[index] = levels[level][i];
+                weights[index] = 1L << level;
+                order[index] = index;
+                index++;
+            }
+        }
+        Arrays.sort(order, (first, second) -> Double.compare(values[first], values[second]));
+
+        // The weights sum up to the number of values.
+        long low = (count - 1) / 2;
+        long high = count / 2;
+        Double lowValue = null;
+        long rank = 0;
+        for (Integer i : order) {
+            rank += weights[i];
+            if (lowValue == null && rank > low) {
+                lowValue = values[i];
+            }
+            if (rank > high) {
+                return (lowValue + values[i]) / 2;
+            }
+        }
+        throw new IllegalStateException("inconsistent sketch");
+    }
+
+    private void append(int level, double value) {
+        if (level == levels.length) {
+            levels = Arrays.copyOf(levels, level + 1);
+            sizes = Arrays.copyOf(sizes, level + 1);
+            levels[level] = new double[Math.min(capacity, 16)];
+        }
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], Math.max(16, sizes[level] * 2));
+        }
+        levels[level][sizes[level]++] = value;
+    }
+
+    private void compact(int level) {
+        while (level < levels.length && sizes[level] > capacity) {
+            var buffer = levels[level];
+            int size = sizes[level];
+            Arrays.sort(buffer, 0, size);
+            // An odd value stays in the level so that the weights still sum up to the number of values.
+            int kept = size % 2;
+            int offset = odd ? 1 : 0;
+            odd = !odd;
+            for (int i = kept + offset; i < size; i += 2) {
+                append(level + 1, buffer[i]);
+            }
+            sizes[level] = kept;
+            level++;
+        }
+    }
+}
@@ -56,6 +56,79 @@ public interface ResolvableExpression extends TypedExpression, Serializable {
         };
     }
 
+    /**
+     * Returns a <code>ResolvableExpression</code> with a given type, computed from the value of an operand.
+     * <p>
+     * The operand is resolved against the same context or row as the returned expression.
+     *
+     * @param clazz   The <code>Class</code> corresponding to the type of the expression to create.
+     * @param operand The operand of the expression to create.
+     * @param func    The function computing the value of the expression from the value of the operand.
+     * @param <A>     The type of the value of the operand.
+     * @param <T>     The type of the expression to create.
+     * @return An instance of <code>ResolvableExpression</code> with the given type, operand and function.
+     */
+    static <A, T> ResolvableExpression withType(Class<T> clazz, ResolvableExpression operand, VtlFunction<A, T> func) {
+        return new ResolvableExpression() {
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object resolve(Map<String, Object> context) {
+                return func.apply((A) operand.resolve(context));
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object resolve(Structured.IndexedRow row) {
+                return func.apply((A) operand.resolve(row));
+            }
+
+            @Override
+            public Class<?> getType() {
+                return clazz;
+            }
+
+        };
+    }
+
+    /**
+     * Returns a <code>ResolvableExpression</code> with a given type, computed from the values of two operands.
+     * <p>
+     * The operands are resolved against the same context or row as the returned expression.
+     *
+     * @param clazz The <code>Class</code> corresponding to the type of the expression to create.
+     * @param left  The left operand of the expression to create.
+     * @param right The right operand of the expression to create.
+     * @param func  The function computing the value of the expression from the values of the operands.
+     * @param <A>   The type of the value of the left operand.
+     * @param <B>   The type of the value of the right operand.
+     * @param <T>   The type of the expression to create.
+     * @return An instance of <code>ResolvableExpression</code> with the given type, operands and function.
+     */
+    static <A, B, T> ResolvableExpression withType(Class<T> clazz, ResolvableExpression left,
+                                                   ResolvableExpression right, VtlBiFunction<A, B, T> func) {
+        return new ResolvableExpression() {
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object resolve(Map<String, Object> context) {
+                return func.apply((A) left.resolve(context), (B) right.resolve(context));
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object resolve(Structured.IndexedRow row) {
+                return func.apply((A) left.resolve(row), (B) right.resolve(row));
+            }
+
+            @Override
+            public Class<?> getType() {
+                return clazz;
+            }
+
+        };
+    }
+
     /**
      * Returns a <code>ResolvableExpression</code> with a given type and value.
      *
@@ -71,6 +144,11 @@ public interface ResolvableExpression extends TypedExpression, Serializable {
                 return value;
             }
 
+            @Override
+            public Object resolve(Structured.IndexedRow row) {
+                return value;
+            }
+
             @Override
             public Class getType() {
                 return clazz;
@@ -92,8 +170,41 @@ public interface ResolvableExpression extends TypedExpression, Serializable {
      *
      * @param context the data point to resolve the expression against
      * @return the result of the resolution of the expression
+     * @see #resolve(Structured.IndexedRow)
      */
     default Object resolve(Structured.DataPoint context) {
-        return resolve(new Structured.DataPointMap(context));
+        return resolve((Structured.IndexedRow) context);
+    }
+
+    /**
+     * Resolves the expression for a given row.
+     * <p>
+     * The default implementation resolves the expression against a {@link Map} view of the row. Expressions
+     * evaluated for each row of a dataset should override it and resolve their operands against the row itself.
+     *
+     * @param row the row to resolve the expression against
+     * @return the result of the resolution of the expression
+     */
+    default Object resolve(Structured.IndexedRow row) {
+        return resolve(row.asMap());
+    }
+
+    /**
+     * Resolves the expression for all the selected rows of a batch.
+     * <p>
+     * The default implementation resolves the expression row by row. Expressions that can compute their values
+     * for a whole batch at once, with loops over primitive values, should override it.
+     *
+     * @param batch the rows to resolve the expression against
+     * @return the values of the expression, by row
+     */
+    default ColumnVector resolve(Batch batch) {
+        var values = new Object[batch.size()];
+        for (int i = 0; i < values.length; i++) {
+            if (batch.isSelected(i)) {
+                values[i] = resolve(batch.getRow(i));
+            }
+        }
+        return ColumnVector.of(getType(), values);
     }
 }
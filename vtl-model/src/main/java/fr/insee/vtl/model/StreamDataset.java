@@ -0,0 +1,80 @@
+package fr.insee.vtl.model;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of <code>Dataset</code> whose data points are computed on demand.
+ * <p>
+ * The data points are pulled from a stream supplier, so that chained transformations process one data point
+ * at a time without creating intermediate lists. Each call to {@link #stream()} pulls the data points again
+ * until {@link #getDataPoints()} is called; the data points are then kept in memory.
+ */
+public class StreamDataset implements Dataset {
+
+    private final DataStructure structure;
+    private final List<String> sortOrder;
+    private final Supplier<Stream<DataPoint>> supplier;
+    private volatile List<DataPoint> dataPoints = null;
+
+    /**
+     * Constructor taking the structure and the supplier of the data points.
+     *
+     * @param structure The structure of the data points.
+     * @param supplier  A supplier returning a new stream of the data points each time it is called.
+     */
+    public StreamDataset(DataStructure structure, Supplier<Stream<DataPoint>> supplier) {
+        this(structure, List.of(), supplier);
+    }
+
+    /**
+     * Constructor taking the structure, the sort order and the supplier of the data points.
+     *
+     * @param structure The structure of the data points.
+     * @param sortOrder The names of the components the data points are sorted by.
+     * @param supplier  A supplier returning a new stream of the data points each time it is called.
+     * @throws IllegalArgumentException if a name of the sort order is not in the structure.
+     */
+    public StreamDataset(DataStructure structure, List<String> sortOrder, Supplier<Stream<DataPoint>> supplier) {
+        if (!Objects.requireNonNull(structure).keySet().containsAll(sortOrder)) {
+            throw new IllegalArgumentException("sort order " + sortOrder + " not in the structure");
+        }
+        this.structure = structure;
+        this.sortOrder = List.copyOf(sortOrder);
+        this.supplier = Objects.requireNonNull(supplier);
+    }
+
+    @Override
+    public List<DataPoint> getDataPoints() {
+        var result = dataPoints;
+        if (result == null) {
+            synchronized (this) {
+                result = dataPoints;
+                if (result == null) {
+                    result = supplier.get().collect(Collectors.toList());
+                    dataPoints = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Stream<DataPoint> stream() {
+        var result = dataPoints;
+        return result != null ? result.stream() : supplier.get();
+    }
+
+    @Override
+    public List<String> getSortOrder() {
+        return sortOrder;
+    }
+
+    @Override
+    public DataStructure getDataStructure() {
+        return structure;
+    }
+}
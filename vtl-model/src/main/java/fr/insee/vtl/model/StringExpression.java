@@ -8,12 +8,7 @@ import java.util.Map;
 public abstract class StringExpression implements ResolvableExpression {
 
     public static StringExpression of(CharSequence value) {
-        return new StringExpression() {
-            @Override
-            public String resolve(Map<String, Object> context) {
-                return value.toString();
-            }
-        };
+        return new Constant(value.toString());
     }
 
     @Override
@@ -33,4 +28,30 @@ public abstract class StringExpression implements ResolvableExpression {
         };
     }
 
+    /**
+     * A constant of type <code>String</code>.
+     */
+    private static final class Constant extends StringExpression implements ConstantExpression {
+
+        private final String value;
+
+        private Constant(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public String getValue() {
+            return value;
+        }
+
+        @Override
+        public String resolve(Map<String, Object> context) {
+            return value;
+        }
+
+        @Override
+        public String resolve(Structured.IndexedRow row) {
+            return value;
+        }
+    }
 }
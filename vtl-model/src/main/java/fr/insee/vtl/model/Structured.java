@@ -185,6 +185,30 @@ public interface Structured {
         }
     }
 
+    /**
+     * Read access by position to the values of a structured row.
+     * <p>
+     * Values are at the positions of their components in the {@link DataStructure}.
+     */
+    interface IndexedRow extends Structured {
+
+        /**
+         * Returns the value at the given position.
+         *
+         * @param index the position of the component in the data structure
+         * @return the value at the given position
+         * @throws IndexOutOfBoundsException if the position is out of the data structure.
+         */
+        Object get(int index);
+
+        /**
+         * Returns a {@link Map} view of the row.
+         *
+         * @return a view of the values of the row, by component name
+         */
+        Map<String, Object> asMap();
+    }
+
     /**
      * A structured row of a {@link Dataset}.
      * <p>
@@ -194,7 +218,7 @@ public interface Structured {
      * Two <code>DataPoint</code> instances are considered equal if all of their
      * identifier values are equal.
      */
-    class DataPoint extends ArrayList<Object> {
+    class DataPoint extends ArrayList<Object> implements IndexedRow {
 
         private final DataStructure dataStructure;
 
@@ -242,6 +266,16 @@ public interface Structured {
             addAll(collection);
         }
 
+        @Override
+        public DataStructure getDataStructure() {
+            return dataStructure;
+        }
+
+        @Override
+        public Map<String, Object> asMap() {
+            return new DataPointMap(this);
+        }
+
         private void growSize(int size) {
             while (size() < size) {
                 add(null);
@@ -310,7 +344,7 @@ public interface Structured {
      * <p>
      * The methods remove, putAll and clear are not supported.
      */
-    class DataPointMap implements Map<String, Object> {
+    class DataPointMap implements Map<String, Object>, IndexedRow {
 
         private final DataPoint dataPoint;
 
@@ -323,6 +357,21 @@ public interface Structured {
             this.dataPoint = dataPoint;
         }
 
+        @Override
+        public DataStructure getDataStructure() {
+            return dataPoint.dataStructure;
+        }
+
+        @Override
+        public Object get(int index) {
+            return dataPoint.get(index);
+        }
+
+        @Override
+        public Map<String, Object> asMap() {
+            return this;
+        }
+
         @Override
         public int size() {
             return dataPoint.size();
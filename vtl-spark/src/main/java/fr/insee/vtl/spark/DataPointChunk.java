@@ -0,0 +1,187 @@
+package fr.insee.vtl.spark;
+
+import fr.insee.vtl.model.Dataset;
+import fr.insee.vtl.model.Structured;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+
+import java.io.*;
+import java.lang.reflect.Array;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Data points of a VTL dataset stored column by column, read by the executors as a partition of a spark dataset.
+ * <p>
+ * Long, double and boolean values are stored in primitive arrays and null values in a bitmap per column. The
+ * chunks are written one after the other to a file, so that the driver only keeps one chunk in memory, and each
+ * executor reads its chunk from the file. The rows are only created by the executors, when the partition is read.
+ */
+final class DataPointChunk implements Serializable {
+
+    static final int DEFAULT_SIZE = 1 << 16;
+
+    private final Object[] columns;
+    private final BitSet[] nulls;
+    private int size = 0;
+
+    private DataPointChunk(List<Class<?>> types) {
+        int capacity = 16;
+        columns = new Object[types.size()];
+        nulls = new BitSet[types.size()];
+        for (int i = 0; i < columns.length; i++) {
+            Class<?> type = types.get(i);
+            if (Long.class.equals(type)) {
+                columns[i] = new long[capacity];
+            } else if (Double.class.equals(type)) {
+                columns[i] = new double[capacity];
+            } else if (Boolean.class.equals(type)) {
+                columns[i] = new boolean[capacity];
+            } else {
+                columns[i] = new Object[capacity];
+            }
+            nulls[i] = new BitSet();
+        }
+    }
+
+    /**
+     * Writes the data points of a dataset in chunks to a file, reading them once from the stream of the dataset.
+     *
+     * @param dataset   The dataset to write.
+     * @param chunkSize The maximum number of data points of a chunk.
+     * @param path      The file to write the chunks to.
+     * @return The positions and the lengths of the chunks in the file, in the order of the data points.
+     * @throws IOException if the file cannot be written.
+     */
+    static List<long[]> write(Dataset dataset, int chunkSize, Path path) throws IOException {
+        List<Class<?>> types = new ArrayList<>();
+        for (Structured.Component component : dataset.getDataStructure().values()) {
+            types.add(component.getType());
+        }
+        List<long[]> positions = new ArrayList<>();
+        var iterator = dataset.stream().iterator();
+        try (var out = new BufferedOutputStream(Files.newOutputStream(path))) {
+            long position = 0;
+            while (iterator.hasNext()) {
+                var chunk = new DataPointChunk(types);
+                while (chunk.size < chunkSize && iterator.hasNext()) {
+                    chunk.add(iterator.next());
+                }
+                // Removes the unused capacity of the columns, so that it is not written.
+                chunk.resize(chunk.size);
+                var bytes = new ByteArrayOutputStream();
+                try (var objects = new ObjectOutputStream(bytes)) {
+                    objects.writeObject(chunk);
+                }
+                bytes.writeTo(out);
+                positions.add(new long[]{position, bytes.size()});
+                position += bytes.size();
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Reads a chunk written by {@link #write(Dataset, int, Path)}.
+     *
+     * @param path     The file the chunk was written to.
+     * @param position The position of the chunk in the file.
+     * @param length   The length of the chunk in the file.
+     * @return The chunk.
+     * @throws IOException if the file cannot be read.
+     */
+    static DataPointChunk read(Path path, long position, int length) throws IOException {
+        var bytes = new byte[length];
+        try (var file = new RandomAccessFile(path.toFile(), "r")) {
+            file.seek(position);
+            file.readFully(bytes);
+        }
+        try (var objects = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (DataPointChunk) objects.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void add(List<Object> dataPoint) {
+        if (size == capacity()) {
+            resize(size * 2);
+        }
+        for (int i = 0; i < columns.length; i++) {
+            Object value = dataPoint.get(i);
+            if (value == null) {
+                nulls[i].set(size);
+            } else if (columns[i] instanceof long[]) {
+                ((long[]) columns[i])[size] = (Long) value;
+            } else if (columns[i] instanceof double[]) {
+                ((double[]) columns[i])[size] = (Double) value;
+            } else if (columns[i] instanceof boolean[]) {
+                ((boolean[]) columns[i])[size] = (Boolean) value;
+            } else {
+                ((Object[]) columns[i])[size] = value;
+            }
+        }
+        size++;
+    }
+
+    private Object get(int column, int row) {
+        if (nulls[column].get(row)) {
+            return null;
+        } else if (columns[column] instanceof long[]) {
+            return ((long[]) columns[column])[row];
+        } else if (columns[column] instanceof double[]) {
+            return ((double[]) columns[column])[row];
+        } else if (columns[column] instanceof boolean[]) {
+            return ((boolean[]) columns[column])[row];
+        } else {
+            return ((Object[]) columns[column])[row];
+        }
+    }
+
+    /**
+     * Returns the rows of the chunk, created on demand.
+     */
+    Iterator<Row> rows() {
+        return new Iterator<>() {
+
+            private int row = 0;
+
+            @Override
+            public boolean hasNext() {
+                return row < size;
+            }
+
+            @Override
+            public Row next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                var values = new Object[columns.length];
+                for (int column = 0; column < columns.length; column++) {
+                    values[column] = get(column, row);
+                }
+                row++;
+                return RowFactory.create(values);
+            }
+        };
+    }
+
+    private int capacity() {
+        return columns.length == 0 ? Integer.MAX_VALUE : Array.getLength(columns[0]);
+    }
+
+    private void resize(int capacity) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i] instanceof long[]) {
+                columns[i] = Arrays.copyOf((long[]) columns[i], capacity);
+            } else if (columns[i] instanceof double[]) {
+                columns[i] = Arrays.copyOf((double[]) columns[i], capacity);
+            } else if (columns[i] instanceof boolean[]) {
+                columns[i] = Arrays.copyOf((boolean[]) columns[i], capacity);
+            } else {
+                columns[i] = Arrays.copyOf((Object[]) columns[i], capacity);
+            }
+        }
+    }
+}
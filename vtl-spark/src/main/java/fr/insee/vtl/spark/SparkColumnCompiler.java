@@ -0,0 +1,240 @@
+package fr.insee.vtl.spark;
+
+import fr.insee.vtl.model.*;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.types.DataTypes;
+
+import java.util.*;
+
+import static org.apache.spark.sql.functions.*;
+
+/**
+ * Compiles VTL expressions to spark columns, so that catalyst can optimize them and generate their code.
+ * <p>
+ * The components, the constants, the arithmetic, comparison and boolean operations, the if-then-else expressions
+ * and the string and numeric functions are compiled when spark computes the same values as the VTL expression.
+ * The other expressions are wrapped in a {@link SparkExpression} that resolves them on the columns they reference,
+ * or on all the columns of the dataset when these cannot be known.
+ */
+final class SparkColumnCompiler {
+
+    private final List<String> names;
+
+    private SparkColumnCompiler(List<String> names) {
+        this.names = names;
+    }
+
+    /**
+     * Compiles an expression to a spark column of the type of the expression.
+     *
+     * @param expression The expression to compile.
+     * @param names      The names of the columns of the dataset the expression is resolved on.
+     * @return The column, or an empty optional if the expression or one of its operands has a type spark does not
+     * support.
+     */
+    static Optional<Column> compile(ResolvableExpression expression, List<String> names) {
+        if (!isSupported(expression.getType())) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(new SparkColumnCompiler(names).toColumn(expression))
+                .map(column -> column.cast(SparkDataset.fromVtlType(expression.getType())));
+    }
+
+    private Column toColumn(ResolvableExpression expression) {
+        var column = toNativeColumn(expression);
+        if (column == null && isSupported(expression.getType())) {
+            return new Column(new SparkExpression(expression, references(expression)));
+        }
+        return column;
+    }
+
+    /**
+     * Returns the names of the columns an expression references, in the order of the dataset.
+     */
+    private List<String> references(ResolvableExpression expression) {
+        Set<String> references = new HashSet<>();
+        if (!addReferences(expression, references)) {
+            return names;
+        }
+        List<String> referenced = new ArrayList<>();
+        for (String name : names) {
+            if (references.contains(name)) {
+                referenced.add(name);
+            }
+        }
+        return referenced;
+    }
+
+    /**
+     * Adds the names of the components an expression references.
+     *
+     * @return false if the expression contains an expression whose components are not known.
+     */
+    private static boolean addReferences(ResolvableExpression expression, Set<String> references) {
+        if (expression instanceof ComponentExpression) {
+            references.add(((ComponentExpression) expression).getComponent().getName());
+            return true;
+        } else if (expression instanceof ConstantExpression) {
+            return true;
+        } else if (expression instanceof ArithmeticExpression) {
+            var arithmetic = (ArithmeticExpression) expression;
+            return addReferences(arithmetic.getLeft(), references) && addReferences(arithmetic.getRight(), references);
+        } else if (expression instanceof ComparisonExpression) {
+            var comparison = (ComparisonExpression) expression;
+            return addReferences(comparison.getLeft(), references) && addReferences(comparison.getRight(), references);
+        } else if (expression instanceof LogicalExpression) {
+            var logical = (LogicalExpression) expression;
+            return addReferences(logical.getLeft(), references) && addReferences(logical.getRight(), references);
+        } else if (expression instanceof IfExpression) {
+            var ifExpression = (IfExpression) expression;
+            return addReferences(ifExpression.getCondition(), references)
+                   && addReferences(ifExpression.getThen(), references)
+                   && addReferences(ifExpression.getElse(), references);
+        } else if (expression instanceof FunctionExpression) {
+            return addReferences(((FunctionExpression) expression).getOperand(), references);
+        }
+        return false;
+    }
+
+    private Column toNativeColumn(ResolvableExpression expression) {
+        if (expression instanceof ComponentExpression) {
+            return col(((ComponentExpression) expression).getComponent().getName());
+        } else if (expression instanceof ConstantExpression) {
+            return toColumn((ConstantExpression) expression);
+        } else if (expression instanceof ArithmeticExpression) {
+            return toColumn((ArithmeticExpression) expression);
+        } else if (expression instanceof ComparisonExpression) {
+            return toColumn((ComparisonExpression) expression);
+        } else if (expression instanceof LogicalExpression) {
+            return toColumn((LogicalExpression) expression);
+        } else if (expression instanceof IfExpression) {
+            return toColumn((IfExpression) expression);
+        } else if (expression instanceof FunctionExpression) {
+            return toColumn((FunctionExpression) expression);
+        }
+        return null;
+    }
+
+    private Column toColumn(ConstantExpression expression) {
+        if (expression.getValue() == null) {
+            if (!isSupported(expression.getType())) {
+                return null;
+            }
+            return lit(null).cast(SparkDataset.fromVtlType(expression.getType()));
+        }
+        return lit(expression.getValue());
+    }
+
+    private Column toColumn(ArithmeticExpression expression) {
+        var left = toColumn(expression.getLeft());
+        var right = toColumn(expression.getRight());
+        if (left == null || right == null) {
+            return null;
+        }
+        if (!Long.class.equals(expression.getType())) {
+            left = left.cast(DataTypes.DoubleType);
+            right = right.cast(DataTypes.DoubleType);
+        }
+        switch (expression.getOperator()) {
+            case PLUS:
+                return left.plus(right);
+            case MINUS:
+                return left.minus(right);
+            case MULTIPLY:
+                return left.multiply(right);
+            default:
+                // Spark divides by zero as null, java as an infinity or NaN depending on the signs of the operands,
+                // including the sign of a zero divisor. The divisions by zero are resolved by the VTL expression.
+                return when(right.equalTo(0), new Column(new SparkExpression(expression, references(expression))))
+                        .otherwise(left.divide(right));
+        }
+    }
+
+    private Column toColumn(ComparisonExpression expression) {
+        var left = toColumn(expression.getLeft());
+        var right = toColumn(expression.getRight());
+        if (left == null || right == null) {
+            return null;
+        }
+        switch (expression.getOperator()) {
+            case EQUAL:
+                return left.equalTo(right);
+            case NOT_EQUAL:
+                return left.notEqual(right);
+            case LESS_THAN:
+                return left.lt(right);
+            case GREATER_THAN:
+                return left.gt(right);
+            case LESS_THAN_OR_EQUAL:
+                return left.leq(right);
+            default:
+                return left.geq(right);
+        }
+    }
+
+    private Column toColumn(LogicalExpression expression) {
+        var left = toColumn(expression.getLeft());
+        var right = toColumn(expression.getRight());
+        if (left == null || right == null) {
+            return null;
+        }
+        // The boolean operators of spark have the same three-valued logic.
+        switch (expression.getOperator()) {
+            case AND:
+                return left.and(right);
+            case OR:
+                return left.or(right);
+            default:
+                return left.notEqual(right);
+        }
+    }
+
+    private Column toColumn(IfExpression expression) {
+        var condition = toColumn(expression.getCondition());
+        var thenColumn = toColumn(expression.getThen());
+        var elseColumn = toColumn(expression.getElse());
+        if (condition == null || thenColumn == null || elseColumn == null) {
+            return null;
+        }
+        return when(condition, thenColumn).otherwise(elseColumn);
+    }
+
+    private Column toColumn(FunctionExpression expression) {
+        var operand = toColumn(expression.getOperand());
+        if (operand == null) {
+            return null;
+        }
+        switch (expression.getFunction()) {
+            case TRIM:
+                // The trim function of spark only removes spaces.
+                return regexp_replace(operand, "^[\\x00-\\x20]+|[\\x00-\\x20]+$", "");
+            case LTRIM:
+                return regexp_replace(operand, "^\\s+", "");
+            case RTRIM:
+                return regexp_replace(operand, "\\s+$", "");
+            case UPPER:
+                return upper(operand);
+            case LOWER:
+                return lower(operand);
+            case LENGTH:
+                // The length function of spark counts the code points, java the UTF-16 code units.
+                return null;
+            case CEIL:
+                return ceil(operand.cast(DataTypes.DoubleType));
+            case FLOOR:
+                return floor(operand.cast(DataTypes.DoubleType));
+            case ABS:
+                return abs(operand.cast(DataTypes.DoubleType));
+            case EXP:
+                return exp(operand.cast(DataTypes.DoubleType));
+            default:
+                // The logarithm of spark is null for the values that are not positive.
+                return null;
+        }
+    }
+
+    private static boolean isSupported(Class<?> type) {
+        return String.class.equals(type) || Long.class.equals(type) || Double.class.equals(type)
+               || Boolean.class.equals(type);
+    }
+}
@@ -2,8 +2,10 @@ package fr.insee.vtl.spark;
 
 import fr.insee.vtl.model.Dataset;
 import fr.insee.vtl.model.Structured;
+import org.apache.spark.SparkFiles;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.sql.Row;
-import org.apache.spark.sql.RowFactory;
 import org.apache.spark.sql.SparkSession;
 import org.apache.spark.sql.types.DataType;
 import org.apache.spark.sql.types.DataTypes;
@@ -11,6 +13,11 @@ import org.apache.spark.sql.types.StructField;
 import org.apache.spark.sql.types.StructType;
 import scala.collection.JavaConverters;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -34,14 +41,34 @@ public class SparkDataset implements Dataset {
         this.sparkDataset = sparkDataset;
     }
 
+    /**
+     * Creates a spark dataset from the data points of a VTL dataset.
+     * <p>
+     * The data points are streamed once into chunks stored column by column and written to a temporary file,
+     * the driver keeping one chunk in memory at a time. The file is distributed with
+     * {@link org.apache.spark.SparkContext#addFile(String)} and each executor reads the chunks of its partitions
+     * from it. The rows are created by the executors, not by the driver.
+     */
     public SparkDataset(Dataset vtlDataset, Map<String, Role> roles, SparkSession spark) {
-        List<Row> rows = vtlDataset.getDataPoints().stream().map(points ->
-                RowFactory.create(points.toArray(new Object[]{}))
-        ).collect(Collectors.toList());
-
         // TODO: Handle nullable with component
         StructType schema = toSparkSchema(vtlDataset.getDataStructure());
 
+        List<long[]> positions;
+        String fileName;
+        try {
+            Path path = Files.createTempFile("vtl-dataset-", ".chunks");
+            path.toFile().deleteOnExit();
+            positions = DataPointChunk.write(vtlDataset, DataPointChunk.DEFAULT_SIZE, path);
+            spark.sparkContext().addFile(path.toString());
+            fileName = path.getFileName().toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        JavaRDD<Row> rows = JavaSparkContext.fromSparkContext(spark.sparkContext())
+                .parallelize(positions, Math.max(1, positions.size()))
+                .flatMap(position -> DataPointChunk.read(Paths.get(SparkFiles.get(fileName)), position[0],
+                        (int) position[1]).rows());
+
         this.sparkDataset = spark.createDataFrame(rows, schema);
         this.roles = Objects.requireNonNull(roles);
     }
@@ -3,59 +3,222 @@ package fr.insee.vtl.spark;
 import fr.insee.vtl.model.ResolvableExpression;
 import org.apache.spark.sql.catalyst.InternalRow;
 import org.apache.spark.sql.catalyst.expressions.Expression;
+import org.apache.spark.sql.catalyst.expressions.codegen.CodeBlock;
+import org.apache.spark.sql.catalyst.expressions.codegen.CodeGenerator;
 import org.apache.spark.sql.catalyst.expressions.codegen.CodegenContext;
 import org.apache.spark.sql.catalyst.expressions.codegen.ExprCode;
+import org.apache.spark.sql.catalyst.expressions.codegen.JavaCode;
 import org.apache.spark.sql.types.DataType;
+import org.apache.spark.unsafe.types.UTF8String;
 import scala.collection.Seq;
 
-import java.util.Objects;
+import java.io.Serializable;
+import java.util.*;
 
-public class SparkExpression extends Expression {
+import static org.apache.spark.sql.functions.col;
+import static scala.collection.JavaConverters.iterableAsScalaIterable;
+import static scala.collection.JavaConverters.seqAsJavaList;
+
+/**
+ * A catalyst expression that resolves a VTL expression.
+ * <p>
+ * The children of the expression are the columns of the dataset the VTL expression is resolved on, usually the
+ * ones it references. Their values
+ * are read by catalyst, in the generated code or not, and then given by name to the VTL expression. This lets the
+ * expressions that cannot be compiled to spark columns be part of the same plan as the other columns.
+ */
+public class SparkExpression extends Expression implements Serializable {
 
     private final ResolvableExpression expression;
+    private final List<String> names;
+    private final Seq<Expression> children;
+    private final Map<String, Integer> indexes = new HashMap<>();
 
-    public SparkExpression(ResolvableExpression expression) {
+    /**
+     * Constructor, used by catalyst to copy the expression with new children.
+     *
+     * @param expression The VTL expression.
+     * @param names      The names of the columns the VTL expression is resolved on.
+     * @param children   The expressions of these columns.
+     */
+    public SparkExpression(ResolvableExpression expression, List<String> names, Seq<Expression> children) {
         this.expression = Objects.requireNonNull(expression);
+        this.names = List.copyOf(names);
+        this.children = Objects.requireNonNull(children);
+        if (this.names.size() != children.size()) {
+            throw new IllegalArgumentException("the names and the children of the expression do not match");
+        }
+        for (int i = 0; i < this.names.size(); i++) {
+            indexes.put(this.names.get(i), i);
+        }
+        // Fails early if the type is not supported.
+        SparkDataset.fromVtlType(expression.getType());
+    }
+
+    /**
+     * Creates an expression resolved on the columns of the given names.
+     *
+     * @param expression The VTL expression.
+     * @param names      The names of the columns the VTL expression is resolved on.
+     */
+    public SparkExpression(ResolvableExpression expression, List<String> names) {
+        this(expression, names, toChildren(names));
+    }
+
+    private static Seq<Expression> toChildren(List<String> names) {
+        List<Expression> children = new ArrayList<>();
+        for (String name : names) {
+            children.add(col(name).expr());
+        }
+        return iterableAsScalaIterable(children).toSeq();
+    }
+
+    /**
+     * Resolves the VTL expression with the values of the children, in the internal format of spark.
+     * <p>
+     * Called by the generated code.
+     *
+     * @param values The values of the children.
+     * @return The value of the expression, in the internal format of spark.
+     */
+    public Object evaluate(Object[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] instanceof UTF8String) {
+                values[i] = values[i].toString();
+            }
+        }
+        Object result = expression.resolve(new Values(indexes, values));
+        if (result instanceof String) {
+            return UTF8String.fromString((String) result);
+        }
+        return result;
     }
 
     @Override
     public boolean nullable() {
-        return false;
+        return true;
     }
 
     @Override
     public Object eval(InternalRow input) {
-
-        return null;
+        List<Expression> expressions = seqAsJavaList(children);
+        Object[] values = new Object[expressions.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = expressions.get(i).eval(input);
+        }
+        return evaluate(values);
     }
 
     @Override
     public ExprCode doGenCode(CodegenContext ctx, ExprCode ev) {
-        return null;
+        String reference = ctx.addReferenceObj("vtlExpression", this, SparkExpression.class.getName());
+        String values = ctx.freshName("values");
+        String result = ctx.freshName("result");
+        List<Expression> expressions = seqAsJavaList(children);
+
+        StringBuilder code = new StringBuilder();
+        code.append(String.format("Object[] %s = new Object[%d];%n", values, expressions.size()));
+        for (int i = 0; i < expressions.size(); i++) {
+            Expression child = expressions.get(i);
+            ExprCode childCode = child.genCode(ctx);
+            code.append(childCode.code()).append("\n");
+            code.append(String.format("if (!%s) {%n  %s[%d] = %s;%n}%n",
+                    childCode.isNull(), values, i, box(child.dataType(), childCode.value().toString())));
+        }
+
+        DataType type = dataType();
+        String javaType = CodeGenerator.javaType(type);
+        String boxedType = CodeGenerator.boxedType(type);
+        code.append(String.format("Object %s = %s.evaluate(%s);%n", result, reference, values));
+        code.append(String.format("boolean %s = %s == null;%n", ev.isNull(), result));
+        code.append(String.format("%s %s = %s;%n", javaType, ev.value(), CodeGenerator.defaultValue(type, true)));
+        code.append(String.format("if (!%s) {%n  %s = %s;%n}%n", ev.isNull(), ev.value(),
+                javaType.equals(boxedType)
+                        ? String.format("(%s) %s", boxedType, result)
+                        : String.format("((%s) %s).%sValue()", boxedType, result, javaType)));
+
+        return new ExprCode(
+                new CodeBlock(iterableAsScalaIterable(List.of(code.toString())).toSeq(),
+                        iterableAsScalaIterable(List.<JavaCode>of()).toSeq()),
+                ev.isNull(),
+                ev.value()
+        );
+    }
+
+    private static String box(DataType type, String value) {
+        String javaType = CodeGenerator.javaType(type);
+        String boxedType = CodeGenerator.boxedType(type);
+        if (javaType.equals(boxedType)) {
+            return value;
+        }
+        return String.format("%s.valueOf(%s)", boxedType, value);
     }
 
     @Override
     public DataType dataType() {
-        return null;
+        return SparkDataset.fromVtlType(expression.getType());
     }
 
     @Override
     public Seq<Expression> children() {
-        return null;
+        return children;
     }
 
     @Override
     public Object productElement(int n) {
-        return null;
+        switch (n) {
+            case 0:
+                return expression;
+            case 1:
+                return names;
+            case 2:
+                return children;
+            default:
+                throw new IndexOutOfBoundsException(String.valueOf(n));
+        }
     }
 
     @Override
     public int productArity() {
-        return 0;
+        return 3;
     }
 
     @Override
     public boolean canEqual(Object that) {
-        return false;
+        return that instanceof SparkExpression;
+    }
+
+    /**
+     * The values of the children, by name.
+     */
+    private static final class Values extends AbstractMap<String, Object> {
+
+        private final Map<String, Integer> indexes;
+        private final Object[] values;
+
+        private Values(Map<String, Integer> indexes, Object[] values) {
+            this.indexes = indexes;
+            this.values = values;
+        }
+
+        @Override
+        public Object get(Object key) {
+            Integer index = indexes.get(key);
+            return index == null ? null : values[index];
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return indexes.containsKey(key);
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            Set<Entry<String, Object>> entries = new LinkedHashSet<>();
+            for (Entry<String, Integer> index : indexes.entrySet()) {
+                entries.add(new SimpleImmutableEntry<>(index.getKey(), values[index.getValue()]));
+            }
+            return entries;
+        }
     }
 }
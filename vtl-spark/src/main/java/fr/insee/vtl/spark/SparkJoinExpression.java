@@ -0,0 +1,67 @@
+package fr.insee.vtl.spark;
+
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+
+import java.util.List;
+import java.util.Map;
+
+import static fr.insee.vtl.model.Dataset.Role;
+
+/**
+ * The join of spark datasets, keeping the joined datasets so that filters can be applied to them before the join.
+ */
+class SparkJoinExpression extends SparkDatasetExpression {
+
+    private final List<Dataset<Row>> datasets;
+    private final List<String> identifiers;
+    private final String type;
+    private final Map<String, Role> roles;
+
+    SparkJoinExpression(Dataset<Row> join, List<Dataset<Row>> datasets, List<String> identifiers, String type,
+                        Map<String, Role> roles) {
+        super(new SparkDataset(join, roles));
+        this.datasets = List.copyOf(datasets);
+        this.identifiers = List.copyOf(identifiers);
+        this.type = type;
+        this.roles = roles;
+    }
+
+    /**
+     * Returns true if a filter reading the given columns can be applied to the joined dataset at the given
+     * position before the join.
+     * <p>
+     * The filter must only read columns of the dataset, and the rows of the other datasets without match must
+     * not be kept: they would be kept for the rows the filter removes.
+     */
+    boolean canFilter(int index, List<String> columns) {
+        if (!List.of(datasets.get(index).columns()).containsAll(columns)) {
+            return false;
+        }
+        switch (type) {
+            case "inner":
+            case "cross":
+                return true;
+            case "left":
+                return index == 0;
+            default:
+                return false;
+        }
+    }
+
+    List<Dataset<Row>> getDatasets() {
+        return datasets;
+    }
+
+    List<String> getIdentifiers() {
+        return identifiers;
+    }
+
+    String getJoinType() {
+        return type;
+    }
+
+    Map<String, Role> getRoles() {
+        return roles;
+    }
+}
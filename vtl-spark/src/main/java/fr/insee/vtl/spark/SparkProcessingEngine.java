@@ -1,16 +1,13 @@
 package fr.insee.vtl.spark;
 
 import fr.insee.vtl.model.*;
-import org.apache.spark.api.java.function.MapFunction;
 import org.apache.spark.sql.Column;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
 import org.apache.spark.sql.SparkSession;
-import org.apache.spark.sql.catalyst.encoders.RowEncoder;
-import org.apache.spark.sql.catalyst.expressions.GenericRowWithSchema;
+import org.apache.spark.sql.catalyst.expressions.aggregate.Percentile;
+import org.apache.spark.sql.expressions.Window;
 import org.apache.spark.sql.types.DataTypes;
-import org.apache.spark.sql.types.StructField;
-import org.apache.spark.sql.types.StructType;
 import scala.collection.Seq;
 
 import javax.script.ScriptEngine;
@@ -21,11 +18,16 @@ import java.util.stream.Collectors;
 import static fr.insee.vtl.model.Dataset.Component;
 import static fr.insee.vtl.model.Dataset.Role;
 import static fr.insee.vtl.model.Dataset.Role.IDENTIFIER;
-import static fr.insee.vtl.spark.SparkDataset.fromVtlType;
+import static org.apache.spark.sql.functions.*;
 import static scala.collection.JavaConverters.iterableAsScalaIterable;
 
 public class SparkProcessingEngine implements ProcessingEngine {
 
+    private static final String UNION_ORDER = "_vtl_union_order";
+    private static final String UNION_ROW = "_vtl_union_row";
+    private static final String UNION_RANK = "_vtl_union_rank";
+    private static final String AGGREGATION_PREFIX = "_vtl_aggregation_";
+
     private final SparkSession spark;
 
     public SparkProcessingEngine(SparkSession spark) {
@@ -61,49 +63,33 @@ public class SparkProcessingEngine implements ProcessingEngine {
         }
     }
 
+    /**
+     * Computes the expressions as spark columns compiled by {@link SparkColumnCompiler}.
+     */
     @Override
     public DatasetExpression executeCalc(DatasetExpression expression, Map<String, ResolvableExpression> expressions, Map<String, Role> roles) {
         SparkDataset dataset = asSparkDataset(expression);
         Dataset<Row> ds = dataset.getSparkDataset();
+        List<String> names = Arrays.asList(ds.schema().fieldNames());
 
-        // Compute the new schema.
-        // TODO: Use conversion from DataStructure.
-        StructType oldSchema = ds.schema();
-        List<String> oldNames = Arrays.asList(oldSchema.fieldNames());
-        List<String> newNames = new ArrayList<>(oldNames);
+        List<String> newNames = new ArrayList<>(names);
         for (String exprName : expressions.keySet()) {
             if (!newNames.contains(exprName)) {
                 newNames.add(exprName);
             }
         }
-
-        List<StructField> newFields = new ArrayList<>();
-        for (String newName : newNames) {
-            if (oldNames.contains(newName) && !expressions.containsKey(newName)) {
-                newFields.add(oldSchema.apply(newName));
+        List<Column> columns = new ArrayList<>();
+        for (String name : newNames) {
+            if (expressions.containsKey(name)) {
+                ResolvableExpression calc = expressions.get(name);
+                Column column = SparkColumnCompiler.compile(calc, names)
+                        .orElseThrow(() -> new UnsupportedOperationException("unsuported type " + calc.getType()));
+                columns.add(column.as(name));
             } else {
-                newFields.add(DataTypes.createStructField(
-                        newName,
-                        fromVtlType(expressions.get(newName).getType()),
-                        true
-                ));
+                columns.add(col(name));
             }
         }
-        StructType newSchema = DataTypes.createStructType(newFields);
-
-        Dataset<Row> result = ds.map((MapFunction<Row, Row>) row -> {
-            SparkRowMap context = new SparkRowMap(row);
-            Object[] objects = new Object[newSchema.size()];
-            for (String name : newSchema.fieldNames()) {
-                int index = newSchema.fieldIndex(name);
-                if (expressions.containsKey(name)) {
-                    objects[index] = expressions.get(name).resolve(context);
-                } else {
-                    objects[index] = row.get(index);
-                }
-            }
-            return new GenericRowWithSchema(objects, newSchema);
-        }, RowEncoder.apply(newSchema));
+        Dataset<Row> result = ds.select(iterableAsScalaIterable(columns).toSeq());
 
         // Create the new role map.
         var roleMap = getRoleMap(dataset);
@@ -112,16 +98,51 @@ public class SparkProcessingEngine implements ProcessingEngine {
         return new SparkDatasetExpression(new SparkDataset(result, roleMap));
     }
 
+    /**
+     * Filters the rows with the compiled column of the filter, or row by row if the filter cannot be compiled.
+     */
+    private static Dataset<Row> filter(Dataset<Row> ds, ResolvableExpression filter) {
+        var column = SparkColumnCompiler.compile(filter, Arrays.asList(ds.schema().fieldNames()));
+        if (column.isPresent()) {
+            return ds.where(column.get());
+        }
+        return ds.filter(new SparkFilterFunction(filter));
+    }
+
     @Override
     public DatasetExpression executeFilter(DatasetExpression expression, ResolvableExpression filter) {
         SparkDataset dataset = asSparkDataset(expression);
-
-        Dataset<Row> ds = dataset.getSparkDataset();
-        SparkFilterFunction filterFunction = new SparkFilterFunction(filter);
-        Dataset<Row> result = ds.filter(filterFunction);
+        Dataset<Row> result = filter(dataset.getSparkDataset(), filter);
         return new SparkDatasetExpression(new SparkDataset(result, getRoleMap(dataset)));
     }
 
+    /**
+     * Applies the filter to the datasets of a join that it only reads columns of, when the result is the same,
+     * so that their rows are filtered before the join.
+     */
+    @Override
+    public DatasetExpression executeFilter(DatasetExpression expression, ResolvableExpression filter,
+                                           Set<String> components) {
+        if (expression instanceof SparkJoinExpression) {
+            var join = (SparkJoinExpression) expression;
+            var columns = List.copyOf(components);
+            var datasets = new ArrayList<>(join.getDatasets());
+            boolean filtered = false;
+            for (int i = 0; i < datasets.size(); i++) {
+                if (join.canFilter(i, columns)) {
+                    datasets.set(i, filter(datasets.get(i), filter));
+                    filtered = true;
+                }
+            }
+            if (filtered) {
+                var result = executeJoin(datasets, join.getIdentifiers(), join.getJoinType());
+                return new SparkJoinExpression(result, datasets, join.getIdentifiers(), join.getJoinType(),
+                        join.getRoles());
+            }
+        }
+        return executeFilter(expression, filter);
+    }
+
     @Override
     public DatasetExpression executeRename(DatasetExpression expression, Map<String, String> fromTo) {
         SparkDataset dataset = asSparkDataset(expression);
@@ -159,16 +180,119 @@ public class SparkProcessingEngine implements ProcessingEngine {
         return new SparkDatasetExpression(new SparkDataset(result, getRoleMap(dataset)));
     }
 
+    /**
+     * Unions the datasets on the executors, keeping the first row for each identifier values: the row of the
+     * first dataset, and in a dataset the first row in the order of its partitions. Without identifiers, the
+     * distinct rows are kept.
+     */
     @Override
     public DatasetExpression executeUnion(List<DatasetExpression> datasets) {
-        throw new UnsupportedOperationException("TODO");
+        var first = asSparkDataset(datasets.get(0));
+        var structure = first.getDataStructure();
+        List<Column> columns = structure.keySet().stream().map(Column::new).collect(Collectors.toList());
+        List<Column> identifiers = structure.values().stream()
+                .filter(Component::isIdentifier)
+                .map(component -> new Column(component.getName()))
+                .collect(Collectors.toList());
+
+        // Number the datasets and their rows so that the first rows are kept.
+        Dataset<Row> union = null;
+        for (int i = 0; i < datasets.size(); i++) {
+            var dataset = (i == 0 ? first : asSparkDataset(datasets.get(i))).getSparkDataset()
+                    .select(iterableAsScalaIterable(columns).toSeq());
+            if (!identifiers.isEmpty()) {
+                dataset = dataset.withColumn(UNION_ORDER, lit(i))
+                        .withColumn(UNION_ROW, monotonically_increasing_id());
+            }
+            union = union == null ? dataset : union.union(dataset);
+        }
+        Dataset<Row> result;
+        if (identifiers.isEmpty()) {
+            result = union.dropDuplicates();
+        } else {
+            var window = Window.partitionBy(iterableAsScalaIterable(identifiers).toSeq())
+                    .orderBy(col(UNION_ORDER), col(UNION_ROW));
+            result = union.withColumn(UNION_RANK, row_number().over(window))
+                    .where(col(UNION_RANK).equalTo(1))
+                    .drop(UNION_ORDER, UNION_ROW, UNION_RANK);
+        }
+
+        return new SparkDatasetExpression(new SparkDataset(result, getRoleMap(first)));
     }
 
+    /**
+     * Aggregates the dataset with <code>groupBy().agg()</code>. The components grouped by are the components of
+     * the structure that are not aggregated, so the key extractor is not used. The aggregated expressions that
+     * are not components are first computed as temporary columns.
+     */
     @Override
     public DatasetExpression executeAggr(DatasetExpression expression, Structured.DataStructure structure,
                                          Map<String, AggregationExpression> collectorMap,
                                          Function<Structured.DataPoint, Map<String, Object>> keyExtractor) {
-        throw new UnsupportedOperationException("TODO");
+        SparkDataset dataset = asSparkDataset(expression);
+
+        Map<String, ResolvableExpression> temporaryColumns = new LinkedHashMap<>();
+        Map<String, Role> temporaryRoles = new LinkedHashMap<>();
+        List<Column> aggregations = new ArrayList<>();
+        for (Map.Entry<String, AggregationExpression> entry : collectorMap.entrySet()) {
+            var aggregation = entry.getValue();
+            Column column = null;
+            if (aggregation.getExpression() instanceof ComponentExpression) {
+                column = col(((ComponentExpression) aggregation.getExpression()).getComponent().getName());
+            } else if (aggregation.getExpression() != null) {
+                var name = AGGREGATION_PREFIX + temporaryColumns.size();
+                temporaryColumns.put(name, aggregation.getExpression());
+                temporaryRoles.put(name, Role.MEASURE);
+                column = col(name);
+            }
+            aggregations.add(toSparkAggregation(aggregation, column).as(entry.getKey()));
+        }
+        if (!temporaryColumns.isEmpty()) {
+            dataset = asSparkDataset(executeCalc(new SparkDatasetExpression(dataset), temporaryColumns,
+                    temporaryRoles));
+        }
+
+        List<Column> groupBy = structure.keySet().stream()
+                .filter(name -> !collectorMap.containsKey(name))
+                .map(Column::new)
+                .collect(Collectors.toList());
+        Dataset<Row> result = dataset.getSparkDataset()
+                .groupBy(iterableAsScalaIterable(groupBy).toSeq())
+                .agg(aggregations.get(0), iterableAsScalaIterable(aggregations.subList(1, aggregations.size())).toSeq());
+
+        return new SparkDatasetExpression(new SparkDataset(result, getRoleMap(structure.values())));
+    }
+
+    private static Column toSparkAggregation(AggregationExpression aggregation, Column column) {
+        if (aggregation.getOperator() == null) {
+            throw new UnsupportedOperationException("unsupported aggregation " + aggregation);
+        }
+        switch (aggregation.getOperator()) {
+            case COUNT:
+                return count(lit(1));
+            case SUM:
+                return sum(column);
+            case AVG:
+                return avg(column);
+            case MIN:
+                return min(column);
+            case MAX:
+                return max(column);
+            case MEDIAN:
+                return percentile_approx(column, lit(0.5), lit(10000)).cast(DataTypes.DoubleType);
+            case EXACT_MEDIAN:
+                return new Column(new Percentile(column.expr(), lit(0.5).expr()).toAggregateExpression());
+            case VAR_POP:
+                return var_pop(column);
+            case VAR_SAMP:
+                return var_samp(column);
+            case STDDEV_POP:
+                return stddev_pop(column);
+            case STDDEV_SAMP:
+                return stddev_samp(column);
+            default:
+                throw new UnsupportedOperationException("unsupported aggregation " + aggregation.getOperator());
+        }
     }
 
     @Override
@@ -176,7 +300,7 @@ public class SparkProcessingEngine implements ProcessingEngine {
         List<Dataset<Row>> sparkDatasets = toAliasedDatasets(datasets);
         List<String> identifiers = identifierNames(components);
         var innerJoin = executeJoin(sparkDatasets, identifiers, "inner");
-        return new SparkDatasetExpression(new SparkDataset(innerJoin, getRoleMap(components)));
+        return new SparkJoinExpression(innerJoin, sparkDatasets, identifiers, "inner", getRoleMap(components));
     }
 
     @Override
@@ -184,14 +308,14 @@ public class SparkProcessingEngine implements ProcessingEngine {
         List<Dataset<Row>> sparkDatasets = toAliasedDatasets(datasets);
         List<String> identifiers = identifierNames(components);
         var innerJoin = executeJoin(sparkDatasets, identifiers, "left");
-        return new SparkDatasetExpression(new SparkDataset(innerJoin, getRoleMap(components)));
+        return new SparkJoinExpression(innerJoin, sparkDatasets, identifiers, "left", getRoleMap(components));
     }
 
     @Override
     public DatasetExpression executeCrossJoin(Map<String, DatasetExpression> datasets, List<Component> identifiers) {
         List<Dataset<Row>> sparkDatasets = toAliasedDatasets(datasets);
         var crossJoin = executeJoin(sparkDatasets, List.of(), "cross");
-        return new SparkDatasetExpression(new SparkDataset(crossJoin, getRoleMap(identifiers)));
+        return new SparkJoinExpression(crossJoin, sparkDatasets, List.of(), "cross", getRoleMap(identifiers));
     }
 
     @Override
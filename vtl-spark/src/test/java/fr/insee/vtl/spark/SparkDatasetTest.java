@@ -10,7 +10,10 @@ import org.apache.spark.sql.types.StructType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import static fr.insee.vtl.model.Structured.Component;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -58,4 +61,30 @@ public class SparkDatasetTest {
         assertThat(sparkDataset.getDataPoints()).isEqualTo(expectedDataset.getDataPoints());
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void testSparkCanReadVtl() {
+
+        List<List<Object>> data = new ArrayList<>();
+        for (long i = 0; i < DataPointChunk.DEFAULT_SIZE + 10; i++) {
+            data.add(i % 3 == 0
+                    ? Arrays.asList(null, null, null, null)
+                    : List.of("string" + i, i, i % 2 == 0, i / 2D));
+        }
+        var vtlDataset = new InMemoryDataset(
+                data,
+                List.of(
+                        new Component("string", String.class, fr.insee.vtl.model.Dataset.Role.MEASURE),
+                        new Component("integer", Long.class, fr.insee.vtl.model.Dataset.Role.MEASURE),
+                        new Component("boolean", Boolean.class, fr.insee.vtl.model.Dataset.Role.MEASURE),
+                        new Component("float", Double.class, fr.insee.vtl.model.Dataset.Role.MEASURE)
+                )
+        );
+
+        var sparkDataset = new SparkDataset(vtlDataset, Map.of(), spark);
+
+        // One partition per chunk of data points.
+        assertThat(sparkDataset.getSparkDataset().rdd().getNumPartitions()).isEqualTo(2);
+        assertThat(sparkDataset.getDataAsList()).isEqualTo(data);
+    }
+}
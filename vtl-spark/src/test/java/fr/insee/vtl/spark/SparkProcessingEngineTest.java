@@ -1,11 +1,16 @@
 package fr.insee.vtl.spark;
 
 import fr.insee.vtl.engine.VtlScriptEngine;
+import fr.insee.vtl.model.ComponentExpression;
 import fr.insee.vtl.model.Dataset;
 import fr.insee.vtl.model.Dataset.Role;
+import fr.insee.vtl.model.FunctionExpression;
 import fr.insee.vtl.model.InMemoryDataset;
 import fr.insee.vtl.model.ProcessingEngineFactory;
+import org.apache.spark.sql.RowFactory;
 import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.catalyst.analysis.UnresolvedAttribute;
+import org.apache.spark.sql.catalyst.expressions.Expression;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,6 +19,7 @@ import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -210,6 +216,27 @@ public class SparkProcessingEngineTest {
         );
     }
 
+    @Test
+    public void testFilterAfterJoin() throws ScriptException {
+        ScriptContext context = engine.getContext();
+        context.getBindings(ScriptContext.ENGINE_SCOPE).put("ds1", dataset1);
+        context.getBindings(ScriptContext.ENGINE_SCOPE).put("ds2", dataset2);
+        context.getBindings(ScriptContext.ENGINE_SCOPE).put("ds3", dataset3);
+
+        engine.eval("result := inner_join(ds1, ds2, ds3)[filter age > 1 and weight3 > 21];");
+        assertThat(((Dataset) context.getAttribute("result")).getDataAsList()).containsExactlyInAnyOrder(
+                Arrays.asList("c", 5L, 6L, 12L, 13L, 22L, 23L),
+                Arrays.asList("c", 5L, 6L, 14L, 15L, 22L, 23L)
+        );
+
+        engine.eval("result := left_join(ds1, ds2)[filter age > 4];");
+        assertThat(((Dataset) context.getAttribute("result")).getDataAsList()).containsExactlyInAnyOrder(
+                Arrays.asList("c", 5L, 6L, 12L, 13L),
+                Arrays.asList("c", 5L, 6L, 14L, 15L),
+                Arrays.asList("d", 7L, 8L, null, null)
+        );
+    }
+
     @Test
     public void testFullJoin() throws ScriptException {
         ScriptContext context = engine.getContext();
@@ -461,4 +488,237 @@ public class SparkProcessingEngineTest {
                 new Component("age", Long.class, Role.MEASURE)
         );
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testUnion() throws ScriptException {
+        var other = new InMemoryDataset(
+                List.of(
+                        List.of(30L, "c", 31L),
+                        List.of(32L, "e", 33L)
+                ),
+                List.of(
+                        new Component("age", Long.class, Role.MEASURE),
+                        new Component("name", String.class, Role.IDENTIFIER),
+                        new Component("weight", Long.class, Role.MEASURE)
+                )
+        );
+        ScriptContext context = engine.getContext();
+        context.setAttribute("ds1", dataset1, ScriptContext.ENGINE_SCOPE);
+        context.setAttribute("ds2", other, ScriptContext.ENGINE_SCOPE);
+
+        engine.eval("ds := union(ds1, ds2);");
+
+        var ds = (Dataset) engine.getContext().getAttribute("ds");
+        assertThat(ds.getDataStructure().keySet()).containsExactly("name", "age", "weight");
+        assertThat(ds.getDataStructure().get("name").getRole()).isEqualTo(Role.IDENTIFIER);
+        assertThat(ds.getDataAsList()).containsExactlyInAnyOrder(
+                List.of("a", 1L, 2L),
+                List.of("b", 3L, 4L),
+                List.of("c", 5L, 6L),
+                List.of("d", 7L, 8L),
+                List.of("e", 32L, 33L)
+        );
+    }
+
+    @Test
+    public void testUnionWithoutIdentifiers() throws ScriptException {
+        var structure = List.of(
+                new Component("value", Long.class, Role.MEASURE),
+                new Component("label", String.class, Role.MEASURE)
+        );
+        var first = new InMemoryDataset(
+                List.of(Arrays.asList(1L, "a"), Arrays.asList(2L, "b"), Arrays.asList(1L, "a")), structure);
+        var second = new InMemoryDataset(
+                List.of(Arrays.asList(2L, "b"), Arrays.asList(null, "c")), structure);
+        ScriptContext context = engine.getContext();
+        context.setAttribute("ds1", first, ScriptContext.ENGINE_SCOPE);
+        context.setAttribute("ds2", second, ScriptContext.ENGINE_SCOPE);
+
+        engine.eval("ds := union(ds1, ds2);");
+
+        var ds = (Dataset) engine.getContext().getAttribute("ds");
+        assertThat(ds.getDataAsList()).containsExactlyInAnyOrder(
+                Arrays.asList(1L, "a"),
+                Arrays.asList(2L, "b"),
+                Arrays.asList(null, "c")
+        );
+    }
+
+    @Test
+    public void testUnionKeepsFirstRowOfADataset() throws ScriptException {
+        var structure = List.of(
+                new Component("name", String.class, Role.IDENTIFIER),
+                new Component("age", Long.class, Role.MEASURE)
+        );
+        List<List<Object>> data = new ArrayList<>();
+        for (long i = 0; i < 1000; i++) {
+            data.add(Arrays.asList("n" + (i % 10), i));
+        }
+        ScriptContext context = engine.getContext();
+        context.setAttribute("ds1", new InMemoryDataset(data, structure), ScriptContext.ENGINE_SCOPE);
+        context.setAttribute("ds2", new InMemoryDataset(List.of(Arrays.asList("n0", -1L)), structure),
+                ScriptContext.ENGINE_SCOPE);
+
+        engine.eval("ds := union(ds2, ds1);");
+
+        var ds = (Dataset) engine.getContext().getAttribute("ds");
+        List<List<Object>> expected = new ArrayList<>();
+        expected.add(Arrays.asList("n0", -1L));
+        for (long i = 1; i < 10; i++) {
+            expected.add(Arrays.asList("n" + i, i));
+        }
+        assertThat(ds.getDataAsList()).containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+    @Test
+    public void testAggregate() throws ScriptException {
+        var dataset = new InMemoryDataset(
+                List.of(
+                        Arrays.asList("Hadrien", "norway", 10L, 11.0),
+                        Arrays.asList("Nico", "france", 11L, 10.0),
+                        Arrays.asList("Franck", "france", 12L, 9.0),
+                        Arrays.asList("Toto", "france", null, 5.0)
+                ),
+                List.of(
+                        new Component("name", String.class, Role.IDENTIFIER),
+                        new Component("country", String.class, Role.IDENTIFIER),
+                        new Component("age", Long.class, Role.MEASURE),
+                        new Component("weight", Double.class, Role.MEASURE)
+                )
+        );
+        ScriptContext context = engine.getContext();
+        context.setAttribute("ds1", dataset, ScriptContext.ENGINE_SCOPE);
+
+        engine.eval("ds := ds1[aggr sumAge := sum(age), avgWeight := avg(weight), countVal := count(null), " +
+                "maxAge := max(age), sumDouble := sum(age * 2) group by country];");
+
+        var ds = (Dataset) engine.getContext().getAttribute("ds");
+        assertThat(ds.getDataStructure().get("country").getRole()).isEqualTo(Role.IDENTIFIER);
+        assertThat(ds.getDataStructure().get("sumAge").getType()).isEqualTo(Long.class);
+        assertThat(ds.getDataAsMap()).containsExactlyInAnyOrder(
+                Map.of("country", "france", "sumAge", 23L, "avgWeight", 8.0, "countVal", 3L,
+                        "maxAge", 12L, "sumDouble", 46L),
+                Map.of("country", "norway", "sumAge", 10L, "avgWeight", 11.0, "countVal", 1L,
+                        "maxAge", 10L, "sumDouble", 20L)
+        );
+    }
+
+    @Test
+    public void testCompiledCalcAndFilter() throws ScriptException {
+        var dataset = new InMemoryDataset(
+                List.of(
+                        Arrays.asList(" Hadrien ", 10L, 11.0),
+                        Arrays.asList("Nico", 11L, 0.0),
+                        Arrays.asList("Franck", null, 9.0)
+                ),
+                List.of(
+                        new Component("name", String.class, Role.IDENTIFIER),
+                        new Component("age", Long.class, Role.MEASURE),
+                        new Component("weight", Double.class, Role.MEASURE)
+                )
+        );
+        ScriptContext context = engine.getContext();
+        context.setAttribute("ds1", dataset, ScriptContext.ENGINE_SCOPE);
+
+        engine.eval("ds := ds1[calc name2 := upper(trim(name)), ratio := age / weight, " +
+                "old := if age > 10 then \"yes\" else \"no\", logWeight := ln(weight)]" +
+                "[filter age >= 10 and (weight <> 0.0 or name = \"Nico\")];");
+
+        var ds = (Dataset) engine.getContext().getAttribute("ds");
+        assertThat(ds.getDataAsMap()).containsExactlyInAnyOrder(
+                Map.of("name", " Hadrien ", "age", 10L, "weight", 11.0, "name2", "HADRIEN",
+                        "ratio", 10.0 / 11.0, "old", "no", "logWeight", Math.log(11.0)),
+                Map.of("name", "Nico", "age", 11L, "weight", 0.0, "name2", "NICO",
+                        "ratio", Double.POSITIVE_INFINITY, "old", "yes", "logWeight", Double.NEGATIVE_INFINITY)
+        );
+    }
+
+    @Test
+    public void testSparkExpression() throws ScriptException {
+        var dataset = new InMemoryDataset(
+                List.of(
+                        Arrays.asList("Hadrien", 11.0),
+                        Arrays.asList("Nico", 0.0),
+                        Arrays.asList("Franck", null)
+                ),
+                List.of(
+                        new Component("name", String.class, Role.IDENTIFIER),
+                        new Component("weight", Double.class, Role.MEASURE)
+                )
+        );
+        ScriptContext context = engine.getContext();
+
+        var script = "ds := ds1[calc logWeight := ln(weight) + 1.0, nameLength := length(name)]" +
+                "[filter ln(weight) > 0.0];";
+        Map<String, Object> expected = Map.of("name", "Hadrien", "weight", 11.0, "logWeight", Math.log(11.0) + 1.0,
+                "nameLength", 7L);
+
+        // The rows of a local relation are computed by the interpreted expressions.
+        var localRelation = spark.createDataFrame(
+                List.of(RowFactory.create("Hadrien", 11.0), RowFactory.create("Nico", 0.0),
+                        RowFactory.create("Franck", null)),
+                SparkDataset.toSparkSchema(dataset.getDataStructure())
+        );
+        context.setAttribute("ds1", new SparkDataset(localRelation, Map.of("name", Role.IDENTIFIER,
+                "weight", Role.MEASURE)), ScriptContext.ENGINE_SCOPE);
+        engine.eval(script);
+        var ds = (SparkDataset) engine.getContext().getAttribute("ds");
+        assertThat(ds.getSparkDataset().queryExecution().optimizedPlan().toString()).doesNotContain("MapElements");
+        assertThat(ds.getDataAsMap()).containsExactly(expected);
+
+        // The other rows are computed by the generated code, that must compile.
+        spark.conf().set("spark.sql.codegen.fallback", "false");
+        try {
+            context.setAttribute("ds1", dataset, ScriptContext.ENGINE_SCOPE);
+            engine.eval(script);
+            ds = (SparkDataset) engine.getContext().getAttribute("ds");
+            assertThat(ds.getSparkDataset().queryExecution().executedPlan().toString()).contains("*(1) Project");
+            assertThat(ds.getDataAsMap()).containsExactly(expected);
+        } finally {
+            spark.conf().unset("spark.sql.codegen.fallback");
+        }
+    }
+
+    @Test
+    public void testSparkExpressionReadsItsReferences() {
+        var name = new ComponentExpression(new Component("name", String.class, Role.IDENTIFIER));
+        var length = new FunctionExpression(FunctionExpression.Function.LENGTH, name);
+
+        var column = SparkColumnCompiler.compile(length, List.of("name", "age", "weight")).orElseThrow();
+
+        Expression expression = column.expr();
+        while (!(expression instanceof SparkExpression)) {
+            expression = expression.children().head();
+        }
+        assertThat(expression.children().size()).isEqualTo(1);
+        assertThat(((UnresolvedAttribute) expression.children().head()).name()).isEqualTo("name");
+    }
+
+    @Test
+    public void testCompiledValuesMatchJava() throws ScriptException {
+        var dataset = new InMemoryDataset(
+                List.of(
+                        Arrays.asList("a\uD83D\uDE00", 1L, -0.0),
+                        Arrays.asList("b", 0L, 0.0),
+                        Arrays.asList("c", -1L, 0.0)
+                ),
+                List.of(
+                        new Component("name", String.class, Role.IDENTIFIER),
+                        new Component("age", Long.class, Role.MEASURE),
+                        new Component("weight", Double.class, Role.MEASURE)
+                )
+        );
+        ScriptContext context = engine.getContext();
+        context.setAttribute("ds1", dataset, ScriptContext.ENGINE_SCOPE);
+
+        engine.eval("ds := ds1[calc nameLength := length(name), ratio := age / weight];");
+
+        var ds = (Dataset) engine.getContext().getAttribute("ds");
+        assertThat(ds.getDataAsMap()).containsExactlyInAnyOrder(
+                Map.of("name", "a\uD83D\uDE00", "age", 1L, "weight", -0.0, "nameLength", 3L,
+                        "ratio", Double.NEGATIVE_INFINITY),
+                Map.of("name", "b", "age", 0L, "weight", 0.0, "nameLength", 1L, "ratio", Double.NaN),
+                Map.of("name", "c", "age", -1L, "weight", 0.0, "nameLength", 1L, "ratio", Double.NEGATIVE_INFINITY)
+        );
+    }
+}